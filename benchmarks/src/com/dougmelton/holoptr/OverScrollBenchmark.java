@@ -0,0 +1,109 @@
+package com.dougmelton.holoptr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RefreshableListView's overscroll policy over a synthetic fling: a refreshing
+ * list flung from the top to the bottom and back, with one onScroll() per
+ * frame. Each invocation is one whole fling, so the setOverScrollMode counter
+ * divided by the score is how often each approach touches the view per fling.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OverScrollBenchmark {
+
+	private static final int ROWS = 200;
+	private static final int VISIBLE_ROWS = 10;
+
+	// firstVisibleItem for each onScroll() of the fling
+	private static final int[] FLING = buildFling();
+
+	private final OverScrollPolicy mPolicy = new OverScrollPolicy();
+
+	@State(Scope.Thread)
+	@AuxCounters
+	public static class Calls {
+		public long setOverScrollMode;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			setOverScrollMode = 0;
+		}
+	}
+
+	@Setup
+	public void setup() {
+		mPolicy.setRefreshingTop(true);
+	}
+
+	/**
+	 * Before change-only updates: the mode is set on every scroll callback.
+	 */
+	@Benchmark
+	public boolean everyCallback(Calls calls) {
+		boolean suppressed = false;
+		for (int i = 0; i < FLING.length; i++) {
+			final int first = FLING[i];
+			suppressed = OverScrollPolicy.isSuppressed(false, true, first == 0,
+					false, first + VISIBLE_ROWS == ROWS);
+			calls.setOverScrollMode++;
+		}
+		return suppressed;
+	}
+
+	/**
+	 * RefreshableListView today: the mode is only set when the policy flips.
+	 */
+	@Benchmark
+	public boolean onFlip(Calls calls) {
+		boolean suppressed = false;
+		for (int i = 0; i < FLING.length; i++) {
+			final int first = FLING[i];
+			mPolicy.setEdges(first == 0, first + VISIBLE_ROWS == ROWS);
+			if (mPolicy.update()) {
+				suppressed = mPolicy.isSuppressed();
+				calls.setOverScrollMode++;
+			}
+		}
+		return suppressed;
+	}
+
+	// A decelerating fling down the whole list, then the same back up
+	private static int[] buildFling() {
+		final int last = ROWS - VISIBLE_ROWS;
+		final int[] down = new int[120];
+		float position = 0;
+		float velocity = 2 * last / (float) down.length;
+		final float deceleration = velocity / down.length;
+		for (int i = 0; i < down.length; i++) {
+			position += velocity;
+			velocity -= deceleration;
+			down[i] = Math.min(last, Math.round(position));
+		}
+		down[down.length - 1] = last;
+
+		final int[] fling = new int[down.length * 2];
+		for (int i = 0; i < down.length; i++) {
+			fling[i] = down[i];
+			fling[down.length + i] = last - down[i];
+		}
+		return fling;
+	}
+}
@@ -0,0 +1,84 @@
+package com.dougmelton.holoptr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dougmelton.holoptr.bench.StandInInterpolators;
+
+/**
+ * The math run on every move event and every animation frame.
+ * animationTickTable is the CurveTable lookup AnimateRunnable now uses, next to
+ * the Interpolator call it replaced. The pull distance stays a direct division,
+ * which measured faster than a table lookup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class PullMathBenchmark {
+
+	// hptr_header_height (64dp) at xhdpi
+	static final int HEADER_HEIGHT = 128;
+
+	// AnimateRunnable.ANIMATION_DURATION_MS; AnimateRunnable itself can't load on a plain JVM
+	static final long DURATION_NS = 200 * 1000000L;
+
+	// Sweep over a spread of inputs so the JIT can't constant-fold them
+	private static final int SAMPLES = 1024;
+
+	private final float[] mPixels = new float[SAMPLES];
+	private final int[] mOffsets = new int[SAMPLES];
+	private final long[] mElapsed = new long[SAMPLES];
+	private int mIndex;
+
+	@Setup
+	public void setup() {
+		for (int i = 0; i < SAMPLES; i++) {
+			mPixels[i] = i * 0.75f;
+			mOffsets[i] = i % (HEADER_HEIGHT + 1);
+			mElapsed[i] = i * DURATION_NS / SAMPLES;
+		}
+	}
+
+	private int next() {
+		mIndex = (mIndex + 1) & (SAMPLES - 1);
+		return mIndex;
+	}
+
+	@Benchmark
+	public float augmentedPullDistance() {
+		return PullMath.augmentedPullDistance(mPixels[next()]);
+	}
+
+	@Benchmark
+	public float skew() {
+		final float degrees = PullMath.skewDegrees(mOffsets[next()]);
+		return degrees + PullMath.skewScale(degrees);
+	}
+
+	@Benchmark
+	public int animationTick() {
+		final long normalizedTime = PullMath.normalizedTime(mElapsed[next()], DURATION_NS);
+		return PullMath.interpolate(HEADER_HEIGHT, 0,
+				StandInInterpolators.accelerateDecelerate(normalizedTime / (float) PullMath.NORMALIZED_ONE));
+	}
+
+	@Benchmark
+	public int animationTickTable() {
+		final long normalizedTime = PullMath.normalizedTime(mElapsed[next()], DURATION_NS);
+		return CurveTable.interpolate(HEADER_HEIGHT, 0,
+				CurveTable.ACCELERATE_DECELERATE.evaluate((int) normalizedTime));
+	}
+}
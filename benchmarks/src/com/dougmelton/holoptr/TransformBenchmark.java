@@ -0,0 +1,248 @@
+package com.dougmelton.holoptr;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dougmelton.holoptr.bench.StandInMatrix;
+import com.dougmelton.holoptr.bench.StandInRect;
+
+/**
+ * The pre-Honeycomb AnimatorProxy path for the pull tilt: the library's own
+ * ProxyTransform and SkewTable, on a matrix stand-in, for a view sized like a
+ * full-screen list. The *Frame benchmarks are one move event's worth of proxy
+ * updates, each the way offset() has driven them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TransformBenchmark {
+
+	private static final int WIDTH = 720;
+	private static final int HEIGHT = 1280;
+	private static final int PIVOT_X = WIDTH / 2;
+
+	private static final int OFFSETS = PullMathBenchmark.HEADER_HEIGHT + 1;
+
+	private final FixedView mView = new FixedView();
+	private final ProxyTransform<StandInMatrix, StandInRect> mProxy =
+			new ProxyTransform<StandInMatrix, StandInRect>(STAND_IN, mView);
+	private final SkewTable mSkewTable = new SkewTable(PullMathBenchmark.HEADER_HEIGHT);
+
+	// One proxy already tilted for each offset, to time the transform without the setters
+	@SuppressWarnings("unchecked")
+	private final ProxyTransform<StandInMatrix, StandInRect>[] mTilted = new ProxyTransform[OFFSETS];
+
+	private final StandInMatrix mMatrix = new StandInMatrix();
+	private final StandInRect mRect = new StandInRect();
+	private int mOffset;
+
+	@Setup
+	public void setup() {
+		for (int offset = 0; offset < OFFSETS; offset++) {
+			final ProxyTransform<StandInMatrix, StandInRect> tilted =
+					new ProxyTransform<StandInMatrix, StandInRect>(STAND_IN, new FixedView());
+			setPerProperty(tilted, offset);
+			mTilted[offset] = tilted;
+		}
+	}
+
+	// Step through every offset of a pull, as a move event would
+	private int nextOffset() {
+		mOffset = (mOffset + 1) % OFFSETS;
+		return mOffset;
+	}
+
+	@Benchmark
+	public StandInMatrix transformMatrix() {
+		mMatrix.reset();
+		mTilted[nextOffset()].transformMatrix(mMatrix);
+		return mMatrix;
+	}
+
+	@Benchmark
+	public StandInRect computeRect() {
+		mTilted[nextOffset()].computeRect(mRect);
+		return mRect;
+	}
+
+	// offsetTop() then offsetSkew() as separate setters, before SkewTable
+	private static void setPerProperty(ProxyTransform<StandInMatrix, StandInRect> proxy, int offset) {
+		final float degrees = PullMath.skewDegrees(offset);
+		final float scale = PullMath.skewScale(degrees);
+		proxy.setTranslationY(offset);
+		proxy.setPivotY(0);
+		proxy.setPivotX(PIVOT_X);
+		proxy.setRotationX(-degrees);
+		proxy.setScaleX(scale);
+		proxy.setScaleY(scale);
+	}
+
+	/**
+	 * Every setter computes the rect before and after and invalidates on its own.
+	 */
+	@Benchmark
+	public StandInRect proxyFrame() {
+		setPerProperty(mProxy, nextOffset());
+		return mView.mDirty;
+	}
+
+	/**
+	 * The same setters inside one beginUpdate()/commitUpdate(): the rect
+	 * before and after are computed once, with one invalidate.
+	 */
+	@Benchmark
+	public StandInRect batchedProxyFrame() {
+		mProxy.beginUpdate();
+		setPerProperty(mProxy, nextOffset());
+		mProxy.commitUpdate();
+		return mView.mDirty;
+	}
+
+	/**
+	 * offset() today: a batch of setTranslationY() and setSkew(), with the
+	 * transform and bounds read from the per-offset cache.
+	 */
+	@Benchmark
+	public StandInRect cachedProxyFrame() {
+		final int offset = nextOffset();
+		mProxy.beginUpdate();
+		mProxy.setTranslationY(offset);
+		mProxy.setSkew(mSkewTable, offset, PIVOT_X);
+		mProxy.commitUpdate();
+		return mView.mDirty;
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Stand-ins
+
+	/**
+	 * A view of a fixed size at 0,0 that keeps the last area invalidated
+	 */
+	private static final class FixedView implements ProxyTransform.Host<StandInRect> {
+		final StandInRect mDirty = new StandInRect();
+
+		@Override
+		public boolean hasView() {
+			return true;
+		}
+
+		@Override
+		public int getLeft() {
+			return 0;
+		}
+
+		@Override
+		public int getTop() {
+			return 0;
+		}
+
+		@Override
+		public int getWidth() {
+			return WIDTH;
+		}
+
+		@Override
+		public int getHeight() {
+			return HEIGHT;
+		}
+
+		@Override
+		public boolean canInvalidate() {
+			return true;
+		}
+
+		@Override
+		public void invalidate(StandInRect dirty) {
+			mDirty.set(dirty.left, dirty.top, dirty.right, dirty.bottom);
+		}
+	}
+
+	private static final TransformOps<StandInMatrix, StandInRect> STAND_IN = new TransformOps<StandInMatrix, StandInRect>() {
+		@Override
+		public StandInMatrix newMatrix() {
+			return new StandInMatrix();
+		}
+
+		@Override
+		public StandInRect newRect() {
+			return new StandInRect();
+		}
+
+		@Override
+		public void reset(StandInMatrix m) {
+			m.reset();
+		}
+
+		@Override
+		public void setMatrix(StandInMatrix m, StandInMatrix src) {
+			m.set(src);
+		}
+
+		@Override
+		public void setCameraRotate(StandInMatrix m, float rotationX, float rotationY, float rotationZ) {
+			// The pull only ever tilts around X
+			if (rotationY != 0 || rotationZ != 0) {
+				throw new UnsupportedOperationException("Only rotationX is modelled");
+			}
+			m.setCameraRotateX(rotationX);
+		}
+
+		@Override
+		public void preTranslate(StandInMatrix m, float dx, float dy) {
+			m.preTranslate(dx, dy);
+		}
+
+		@Override
+		public void postTranslate(StandInMatrix m, float dx, float dy) {
+			m.postTranslate(dx, dy);
+		}
+
+		@Override
+		public void postScale(StandInMatrix m, float sx, float sy) {
+			m.postScale(sx, sy);
+		}
+
+		@Override
+		public void mapRect(StandInMatrix m, StandInRect r) {
+			m.mapRect(r);
+		}
+
+		@Override
+		public void setRect(StandInRect r, float left, float top, float right, float bottom) {
+			r.set(left, top, right, bottom);
+		}
+
+		@Override
+		public void setRect(StandInRect r, StandInRect src) {
+			r.set(src.left, src.top, src.right, src.bottom);
+		}
+
+		@Override
+		public void offset(StandInRect r, float dx, float dy) {
+			r.offset(dx, dy);
+		}
+
+		@Override
+		public void union(StandInRect r, StandInRect other) {
+			r.union(other);
+		}
+
+		@Override
+		public void sort(StandInRect r) {
+			r.sort();
+		}
+	};
+}
@@ -0,0 +1,15 @@
+package com.dougmelton.holoptr.bench;
+
+/**
+ * Plain-JVM copies of the android.view.animation interpolators the library uses.
+ */
+public final class StandInInterpolators {
+
+	private StandInInterpolators() {
+	}
+
+	/** Same curve as AccelerateDecelerateInterpolator.getInterpolation() */
+	public static float accelerateDecelerate(float input) {
+		return (float) (Math.cos((input + 1) * Math.PI) / 2.0f) + 0.5f;
+	}
+}
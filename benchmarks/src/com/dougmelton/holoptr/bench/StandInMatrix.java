@@ -0,0 +1,112 @@
+package com.dougmelton.holoptr.bench;
+
+/**
+ * A plain-JVM stand-in for android.graphics.Matrix and Camera, covering just the
+ * operations AnimatorProxy uses. The arithmetic mirrors Skia's 3x3 matrices
+ * closely enough that the benchmarks measure the same amount of work.
+ */
+public final class StandInMatrix {
+
+	// Camera sits 8 inches from the screen at 72 dpi, as in Skia's SkCamera
+	private static final float CAMERA_DISTANCE = -8f * 72f;
+
+	private float mScaleX, mSkewX, mTransX;
+	private float mSkewY, mScaleY, mTransY;
+	private float mPersp0, mPersp1, mPersp2;
+
+	private final float[] mCorners = new float[8];
+
+	public StandInMatrix() {
+		reset();
+	}
+
+	public void reset() {
+		mScaleX = 1;
+		mSkewX = 0;
+		mTransX = 0;
+		mSkewY = 0;
+		mScaleY = 1;
+		mTransY = 0;
+		mPersp0 = 0;
+		mPersp1 = 0;
+		mPersp2 = 1;
+	}
+
+	public void set(StandInMatrix m) {
+		mScaleX = m.mScaleX;
+		mSkewX = m.mSkewX;
+		mTransX = m.mTransX;
+		mSkewY = m.mSkewY;
+		mScaleY = m.mScaleY;
+		mTransY = m.mTransY;
+		mPersp0 = m.mPersp0;
+		mPersp1 = m.mPersp1;
+		mPersp2 = m.mPersp2;
+	}
+
+	/**
+	 * Equivalent of Camera.save(); rotateX(); getMatrix(m); restore()
+	 */
+	public void setCameraRotateX(float degrees) {
+		final double radians = Math.toRadians(degrees);
+		final float cos = (float) Math.cos(radians);
+		final float sin = (float) Math.sin(radians);
+		reset();
+		mScaleY = cos;
+		mPersp1 = sin / CAMERA_DISTANCE;
+	}
+
+	public void preTranslate(float dx, float dy) {
+		mTransX += mScaleX * dx + mSkewX * dy;
+		mTransY += mSkewY * dx + mScaleY * dy;
+		mPersp2 += mPersp0 * dx + mPersp1 * dy;
+	}
+
+	public void postTranslate(float dx, float dy) {
+		mScaleX += dx * mPersp0;
+		mSkewX += dx * mPersp1;
+		mTransX += dx * mPersp2;
+		mSkewY += dy * mPersp0;
+		mScaleY += dy * mPersp1;
+		mTransY += dy * mPersp2;
+	}
+
+	public void postScale(float sx, float sy) {
+		mScaleX *= sx;
+		mSkewX *= sx;
+		mTransX *= sx;
+		mSkewY *= sy;
+		mScaleY *= sy;
+		mTransY *= sy;
+	}
+
+	/**
+	 * Maps the rect's corners, with perspective, and replaces it with their bounds.
+	 */
+	public void mapRect(StandInRect r) {
+		final float[] c = mCorners;
+		c[0] = r.left;
+		c[1] = r.top;
+		c[2] = r.right;
+		c[3] = r.top;
+		c[4] = r.right;
+		c[5] = r.bottom;
+		c[6] = r.left;
+		c[7] = r.bottom;
+
+		float left = Float.MAX_VALUE, top = Float.MAX_VALUE;
+		float right = -Float.MAX_VALUE, bottom = -Float.MAX_VALUE;
+		for (int i = 0; i < 8; i += 2) {
+			final float x = c[i];
+			final float y = c[i + 1];
+			final float w = mPersp0 * x + mPersp1 * y + mPersp2;
+			final float mx = (mScaleX * x + mSkewX * y + mTransX) / w;
+			final float my = (mSkewY * x + mScaleY * y + mTransY) / w;
+			left = Math.min(left, mx);
+			top = Math.min(top, my);
+			right = Math.max(right, mx);
+			bottom = Math.max(bottom, my);
+		}
+		r.set(left, top, right, bottom);
+	}
+}
@@ -0,0 +1,45 @@
+package com.dougmelton.holoptr.bench;
+
+/**
+ * A plain-JVM stand-in for android.graphics.RectF.
+ */
+public final class StandInRect {
+	public float left;
+	public float top;
+	public float right;
+	public float bottom;
+
+	public void set(float left, float top, float right, float bottom) {
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+	}
+
+	public void offset(float dx, float dy) {
+		left += dx;
+		top += dy;
+		right += dx;
+		bottom += dy;
+	}
+
+	public void union(StandInRect r) {
+		left = Math.min(left, r.left);
+		top = Math.min(top, r.top);
+		right = Math.max(right, r.right);
+		bottom = Math.max(bottom, r.bottom);
+	}
+
+	public void sort() {
+		if (right < left) {
+			final float f = right;
+			right = left;
+			left = f;
+		}
+		if (bottom < top) {
+			final float f = top;
+			top = bottom;
+			bottom = f;
+		}
+	}
+}
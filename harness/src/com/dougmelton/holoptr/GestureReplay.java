@@ -0,0 +1,395 @@
+package com.dougmelton.holoptr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.app.Activity;
+import android.content.Context;
+import android.graphics.Rect;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.ArrayAdapter;
+
+/**
+ * Replays a recorded gesture into a HoloPullToRefreshLayout holding a
+ * RefreshableListView, one input frame at a time on a manually stepped
+ * {@link FrameClock}, and counts the work it causes: library allocations,
+ * requestLayout() and invalidate() calls, layout passes and frames.
+ */
+final class GestureReplay implements FrameClock.TimeSource {
+
+	static final long FRAME_NANOS = 16666667L;
+
+	static final int WIDTH = 480;
+	static final int HEIGHT = 800;
+
+	// Give up on an animation that hasn't settled after this long
+	private static final int MAX_SETTLE_FRAMES = 600;
+
+	private final FrameClock mClock = FrameClock.getInstance();
+	private long mNow = 0;
+
+	// What the shared clock was doing before this harness took it over
+	private final boolean mWasManual;
+	private final FrameClock.TimeSource mPreviousTimeSource;
+
+	private final CountingLayout mLayout;
+	private final CountingListView mList;
+
+	// Frames to wait after onRefresh() before completing; 0 completes from inside onRefresh()
+	private int mRefreshDelayFrames = 0;
+	private int mRefreshCountdown = -1;
+	private int mRefreshes = 0;
+
+	private final LibraryAllocations mAllocations = LibraryAllocations.getInstance();
+	private final Report mReport = new Report();
+
+	GestureReplay(Activity activity) {
+		final Context context = activity;
+		mWasManual = mClock.isManual();
+		mPreviousTimeSource = mClock.getTimeSource();
+		mClock.setManual(true);
+		mClock.setTimeSource(this);
+		// Robolectric would otherwise play each view animation out as soon as it
+		// starts, and the refresh spinner repeats forever
+		ShadowLooper.pauseMainLooper();
+
+		mLayout = new CountingLayout(context);
+		mList = new CountingListView(context);
+		final String[] rows = new String[50];
+		for (int i = 0; i < rows.length; i++) {
+			rows[i] = "Row " + i;
+		}
+		mList.setAdapter(new ArrayAdapter<String>(context, android.R.layout.simple_list_item_1, rows));
+		mLayout.addView(mList);
+
+		mLayout.setOnRefreshListener(new HoloPullToRefreshLayout.OnRefreshListener() {
+			@Override
+			public void onRefresh(HoloPullToRefreshLayout refreshView) {
+				mRefreshes++;
+				if (mRefreshDelayFrames == 0) {
+					refreshView.onRefreshComplete(true);
+				}
+				else {
+					mRefreshCountdown = mRefreshDelayFrames;
+				}
+			}
+		});
+
+		layout();
+		// What the first layout pass does on a device: pick up the refreshable view and go to rest
+		Shadows.shadowOf(mLayout.getViewTreeObserver()).fireOnGlobalLayoutListeners();
+
+		// A ListView ignores touches until it's attached
+		activity.setContentView(mLayout);
+		layout();
+	}
+
+	/**
+	 * Stop driving the shared frame clock, handing it back in the mode and
+	 * time source it had before, so the next harness or test starts clean.
+	 */
+	void release() {
+		mClock.setTimeSource(mPreviousTimeSource);
+		mClock.setManual(mWasManual);
+	}
+
+	HoloPullToRefreshLayout getLayout() {
+		return mLayout;
+	}
+
+	/**
+	 * The header, once a pull has created it
+	 */
+	HoloPullToRefreshHeaderView getHeader() {
+		final View first = mLayout.getChildAt(0);
+		return first instanceof HoloPullToRefreshHeaderView ? (HoloPullToRefreshHeaderView) first : null;
+	}
+
+	/**
+	 * Complete each refresh the given number of frames after it starts, or from
+	 * inside onRefresh() for 0.
+	 */
+	void setRefreshDelayFrames(int frames) {
+		mRefreshDelayFrames = frames;
+	}
+
+	@Override
+	public long nanoTime() {
+		return mNow;
+	}
+
+	/**
+	 * Feed the gesture in, one input frame per frame, then step frames until
+	 * every animation has settled.
+	 */
+	Report replay(Gesture gesture) {
+		final Report report = mReport;
+		report.reset();
+		mLayout.mCounts = report;
+		mList.mCounts = report;
+		final int refreshesBefore = mRefreshes;
+
+		mAllocations.start();
+		final int frames = gesture.getFrameCount();
+		for (int i = 0; i < frames; i++) {
+			final MotionEvent event = gesture.getEvent(i);
+			if (event != null) {
+				if (isRelease(event)) {
+					report.pullRequestLayouts = report.requestLayouts;
+				}
+				mLayout.dispatchTouchEvent(event);
+			}
+			frame(report);
+		}
+
+		while (mClock.hasListeners() || mRefreshCountdown >= 0) {
+			if (report.frames - frames >= MAX_SETTLE_FRAMES) {
+				throw new AssertionError("Still animating after " + MAX_SETTLE_FRAMES + " frames");
+			}
+			frame(report);
+		}
+		// Any completion waiting on a pre-draw pass
+		frame(report);
+		mAllocations.stop();
+
+		if (mAllocations.isAvailable()) {
+			report.allocations = mAllocations.getCount();
+			report.allocationSites.addAll(mAllocations.getSites());
+		}
+		report.refreshes = mRefreshes - refreshesBefore;
+		mLayout.mCounts = null;
+		mList.mCounts = null;
+		return report;
+	}
+
+	private static boolean isRelease(MotionEvent event) {
+		final int action = event.getActionMasked();
+		return action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL;
+	}
+
+	// One frame as the view system runs it: animations, then layout, then the pre-draw pass
+	private void frame(Report report) {
+		mNow += FRAME_NANOS;
+		report.frames++;
+
+		mClock.step();
+
+		if (mRefreshCountdown > 0) {
+			mRefreshCountdown--;
+		}
+		else if (mRefreshCountdown == 0) {
+			mRefreshCountdown = -1;
+			mLayout.onRefreshComplete(true);
+		}
+
+		if (mLayout.isLayoutRequested()) {
+			report.layoutPasses++;
+			layout();
+		}
+		mLayout.getViewTreeObserver().dispatchOnPreDraw();
+	}
+
+	private void layout() {
+		mLayout.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+				View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+		mLayout.layout(0, 0, WIDTH, HEIGHT);
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Gestures
+
+	/**
+	 * A recorded touch stream, one entry per frame. The events are all built
+	 * up front, so replaying them allocates nothing of its own.
+	 */
+	static final class Gesture {
+		private final ArrayList<MotionEvent> mEvents = new ArrayList<MotionEvent>();
+		private final float mX = WIDTH / 2;
+		private long mDownTime;
+		private float mY;
+
+		// Event times are in milliseconds, one frame apart
+		private long frameTime() {
+			return 1000 + mEvents.size() * FRAME_NANOS / 1000000L;
+		}
+
+		private Gesture add(int action) {
+			mEvents.add(MotionEvent.obtain(mDownTime, frameTime(), action, mX, mY, 0));
+			return this;
+		}
+
+		Gesture down(float y) {
+			mDownTime = frameTime();
+			mY = y;
+			return add(MotionEvent.ACTION_DOWN);
+		}
+
+		/**
+		 * Move the finger to y in even steps, one per frame
+		 */
+		Gesture moveTo(float y, int frames) {
+			final float from = mY;
+			for (int i = 1; i <= frames; i++) {
+				mY = from + (y - from) * i / frames;
+				add(MotionEvent.ACTION_MOVE);
+			}
+			return this;
+		}
+
+		/**
+		 * Frames with the finger still, or lifted, and no input
+		 */
+		Gesture hold(int frames) {
+			for (int i = 0; i < frames; i++) {
+				mEvents.add(null);
+			}
+			return this;
+		}
+
+		Gesture up() {
+			return add(MotionEvent.ACTION_UP);
+		}
+
+		Gesture cancel() {
+			return add(MotionEvent.ACTION_CANCEL);
+		}
+
+		int getFrameCount() {
+			return mEvents.size();
+		}
+
+		MotionEvent getEvent(int frame) {
+			return mEvents.get(frame);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Counting
+
+	/**
+	 * What one replay cost
+	 */
+	static final class Report {
+		int frames;
+		int layoutPasses;
+		// As they reach the layout; the list's own requests all pass through it
+		int requestLayouts;
+		// Of those, the ones made before the finger came up
+		int pullRequestLayouts;
+		int invalidates;
+		// The highest the list was moved, in pixels down from its resting place
+		float lowestListTranslationY;
+		int refreshes;
+		// Made by the library itself; -1 without the allocation agent
+		int allocations;
+		final List<String> allocationSites = new ArrayList<String>();
+
+		void reset() {
+			frames = 0;
+			layoutPasses = 0;
+			requestLayouts = 0;
+			pullRequestLayouts = 0;
+			invalidates = 0;
+			lowestListTranslationY = 0;
+			refreshes = 0;
+			allocations = -1;
+			allocationSites.clear();
+		}
+
+		@Override
+		public String toString() {
+			return "frames=" + frames
+					+ " layoutPasses=" + layoutPasses
+					+ " requestLayouts=" + requestLayouts
+					+ " pullRequestLayouts=" + pullRequestLayouts
+					+ " invalidates=" + invalidates
+					+ " lowestListTranslationY=" + lowestListTranslationY
+					+ " refreshes=" + refreshes
+					+ " allocations=" + allocations;
+		}
+	}
+
+	private static final class CountingLayout extends HoloPullToRefreshLayout {
+		Report mCounts;
+
+		CountingLayout(Context context) {
+			super(context);
+		}
+
+		@Override
+		public void requestLayout() {
+			if (mCounts != null) {
+				mCounts.requestLayouts++;
+			}
+			super.requestLayout();
+		}
+
+		@Override
+		public void invalidate() {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate();
+		}
+
+		@Override
+		public void invalidate(int l, int t, int r, int b) {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate(l, t, r, b);
+		}
+
+		@Override
+		public void invalidate(Rect dirty) {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate(dirty);
+		}
+	}
+
+	private static final class CountingListView extends RefreshableListView {
+		Report mCounts;
+
+		CountingListView(Context context) {
+			super(context);
+		}
+
+		@Override
+		public void setTranslationY(float translationY) {
+			if (mCounts != null) {
+				mCounts.lowestListTranslationY = Math.min(mCounts.lowestListTranslationY, translationY);
+			}
+			super.setTranslationY(translationY);
+		}
+
+		@Override
+		public void invalidate() {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate();
+		}
+
+		@Override
+		public void invalidate(int l, int t, int r, int b) {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate(l, t, r, b);
+		}
+
+		@Override
+		public void invalidate(Rect dirty) {
+			if (mCounts != null) {
+				mCounts.invalidates++;
+			}
+			super.invalidate(dirty);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+package com.dougmelton.holoptr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import android.app.Activity;
+import android.os.Build;
+
+import com.dougmelton.holoptr.GestureReplay.Gesture;
+import com.dougmelton.holoptr.GestureReplay.Report;
+
+/**
+ * The state machine under recorded gestures. Each scenario prints what it
+ * cost, to compare against earlier runs, and fails if it ends in the wrong
+ * state, asks for layout during a pull, or allocates over a full cycle.
+ */
+@RunWith(HarnessTestRunner.class)
+@Config(manifest = "../library/AndroidManifest.xml", sdk = 18)
+public class GestureReplayTest {
+
+	private static final float START_Y = 100;
+
+	private final FrameClock mClock = FrameClock.getInstance();
+	private boolean mClockWasManual;
+	private FrameClock.TimeSource mClockTimeSource;
+
+	private GestureReplay mReplay;
+	private int mHeaderHeight;
+
+	@Before
+	public void setUp() {
+		// Robolectric sets SDK_INT but not the SDK string that AnimatorProxy reads
+		ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK", "18");
+
+		mClockWasManual = mClock.isManual();
+		mClockTimeSource = mClock.getTimeSource();
+		mReplay = new GestureReplay(Robolectric.setupActivity(Activity.class));
+		mHeaderHeight = RuntimeEnvironment.application.getResources()
+				.getDimensionPixelSize(R.dimen.hptr_header_height);
+	}
+
+	@After
+	public void tearDown() {
+		mReplay.release();
+		assertEquals(mClockWasManual, mClock.isManual());
+		assertSame(mClockTimeSource, mClock.getTimeSource());
+	}
+
+	// Finger travel that pulls the given multiple of the header height
+	private float travelFor(float headers) {
+		return PullMath.inversePullDistance(headers * mHeaderHeight);
+	}
+
+	private Gesture slowPull() {
+		return new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(1.5f), 60)
+				.hold(10)
+				.up();
+	}
+
+	private Report replay(String scenario, Gesture gesture) {
+		// The first run loads classes and fills caches; report the second
+		mReplay.replay(gesture);
+		final Report report = mReplay.replay(gesture);
+		System.out.println(scenario + ": " + report);
+		return report;
+	}
+
+	@Test
+	public void slowPull_refreshesWithoutLayout() {
+		mReplay.setRefreshDelayFrames(30);
+		final Report report = replay("slow pull", slowPull());
+
+		assertEquals(1, report.refreshes);
+		assertEquals(0, report.pullRequestLayouts);
+	}
+
+	@Test
+	public void fastFlick_refreshesShortOfTheHeader() {
+		// Released well short of the header, but thrown hard enough to carry past it
+		final Gesture flick = new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(0.5f), 3)
+				.up();
+		mReplay.setRefreshDelayFrames(30);
+		final Report report = replay("fast flick", flick);
+
+		assertEquals(1, report.refreshes);
+		assertEquals(0, report.pullRequestLayouts);
+	}
+
+	@Test
+	public void upwardFlick_restsAtTheTop() {
+		// A short pull, a pause long enough for the velocity to forget it, then
+		// thrown back up hard
+		final Gesture flick = new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(0.5f), 10)
+				.hold(15)
+				.moveTo(START_Y + travelFor(0.5f), 1)
+				.moveTo(START_Y + travelFor(0.05f), 1)
+				.up();
+		final Report report = replay("upward flick", flick);
+
+		assertEquals(0, report.refreshes);
+		assertEquals(0, report.lowestListTranslationY, 0);
+	}
+
+	@Test
+	public void pullAndCancel_returnsToRest() {
+		// Past the header and back again, then the gesture is taken away
+		final Gesture cancelled = new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(1.5f), 30)
+				.moveTo(START_Y + travelFor(0.5f), 20)
+				.cancel();
+		final Report report = replay("pull and cancel", cancelled);
+
+		assertEquals(0, report.refreshes);
+		assertEquals(0, report.requestLayouts);
+	}
+
+	@Test
+	public void cancelPastTheHeader_dropsSpeculativeRefresh() {
+		// Start the work when the pull crosses the header, but never run it
+		final List<Runnable> started = new ArrayList<Runnable>();
+		final HoloPullToRefreshLayout layout = mReplay.getLayout();
+		layout.setSpeculativeRefresh(true);
+		layout.setOnAsyncRefreshListener(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				started.add(command);
+			}
+		}, new HoloPullToRefreshLayout.OnAsyncRefreshListener<Void>() {
+			@Override
+			public Void onRefreshInBackground(HoloPullToRefreshLayout refreshView) {
+				return null;
+			}
+
+			@Override
+			public void onRefreshFinished(HoloPullToRefreshLayout refreshView, Void result, Exception error) {
+			}
+		});
+
+		// Taken away (e.g. by a parent) while in 'Release to Refresh'
+		final Gesture cancelled = new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(1.5f), 30)
+				.cancel();
+		final Report report = replay("cancel past the header", cancelled);
+
+		// One speculative start per run, each thrown away rather than promoted
+		assertEquals(2, started.size());
+		for (Runnable task : started) {
+			assertTrue(((Future<?>) task).isCancelled());
+		}
+		assertNull(layout.getRefreshFuture());
+		assertEquals(0, report.requestLayouts);
+	}
+
+	@Test
+	public void pullBackToTheTop_logsNoExtraTransition() {
+		// Already at rest when the finger lifts, so lifting it isn't a transition
+		final Gesture pullBack = new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(0.5f), 5)
+				.moveTo(START_Y - 10, 5)
+				.up();
+		final int before = countTransitions();
+		replay("pull back to the top", pullBack);
+
+		// Per run: REST -> PULL_TO_REFRESH -> REST, and nothing for the release
+		assertEquals(before + 4, countTransitions());
+	}
+
+	private int countTransitions() {
+		final StringWriter dump = new StringWriter();
+		mReplay.getLayout().dumpTransitionLog(new PrintWriter(dump));
+		int count = 0;
+		for (String line : dump.toString().split("\n")) {
+			if (line.contains(" -> ")) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void immediateComplete_returnsToRest() {
+		mReplay.setRefreshDelayFrames(0);
+		final Report report = replay("immediate complete", slowPull());
+
+		assertEquals(1, report.refreshes);
+		assertHeaderRests();
+	}
+
+	@Test
+	public void quickComplete_returnsToRest() {
+		// Done before the header has finished sliding the spinner into place
+		mReplay.setRefreshDelayFrames(5);
+		final Report report = replay("quick complete", slowPull());
+
+		assertEquals(1, report.refreshes);
+		assertHeaderRests();
+	}
+
+	// Nothing left over from the refresh, now or on the next pull
+	private void assertHeaderRests() {
+		final HoloPullToRefreshHeaderView header = mReplay.getHeader();
+		assertEquals(0, header.getInstructionTranslationX());
+		assertEquals(0, header.getSpinnerTranslationX());
+		assertFalse(header.isSpinning());
+
+		mReplay.replay(new Gesture()
+				.down(START_Y)
+				.moveTo(START_Y + travelFor(0.5f), 10));
+		assertTrue(header.isPullToRefreshVisible());
+		assertEquals(0, header.getInstructionTranslationX());
+		assertEquals(0, header.getSpinnerTranslationX());
+		assertFalse(header.isSpinning());
+		mReplay.replay(new Gesture().cancel());
+	}
+
+	@Test
+	public void nestedRelease_leavesTheOuterReplayInCharge() {
+		final GestureReplay inner = new GestureReplay(Robolectric.setupActivity(Activity.class));
+		inner.release();
+
+		assertTrue(mClock.isManual());
+		assertSame(mReplay, mClock.getTimeSource());
+	}
+
+	@Test
+	public void fullCycle_allocatesNothing() {
+		// Pull, refresh, and rest, once the first cycle has warmed everything up
+		mReplay.setRefreshDelayFrames(10);
+		final Report report = replay("full cycle", slowPull());
+
+		assertTrue("Run with the java-allocation-instrumenter agent", report.allocations >= 0);
+		assertEquals(report.allocationSites.toString(), 0, report.allocations);
+		assertEquals(1, report.refreshes);
+	}
+}
@@ -0,0 +1,23 @@
+package com.dougmelton.holoptr;
+
+import org.junit.runners.model.InitializationError;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.internal.bytecode.InstrumentationConfiguration;
+
+/**
+ * Robolectric, sharing the allocation agent's recorder with the tests rather
+ * than loading a second, unhooked copy of it.
+ */
+public class HarnessTestRunner extends RobolectricTestRunner {
+
+	public HarnessTestRunner(Class<?> testClass) throws InitializationError {
+		super(testClass);
+	}
+
+	@Override
+	public InstrumentationConfiguration createClassLoaderConfig() {
+		return InstrumentationConfiguration.newBuilder()
+				.doNotAquirePackage("com.google.monitoring.")
+				.build();
+	}
+}
@@ -0,0 +1,107 @@
+package com.dougmelton.holoptr;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.google.monitoring.runtime.instrumentation.AllocationRecorder;
+import com.google.monitoring.runtime.instrumentation.Sampler;
+
+/**
+ * Records the allocations the library makes, directly or through the JDK
+ * (boxing, varargs, string building), on the replaying thread. Robolectric
+ * allocates on nearly every framework call, so counting everything would
+ * only measure the shadows.
+ *
+ * Needs the java-allocation-instrumenter agent on the JVM; without it
+ * {@link #isAvailable()} is false and nothing is recorded.
+ */
+final class LibraryAllocations implements Sampler {
+
+	private static final String LIBRARY = "com.dougmelton.holoptr.";
+	private static final String HARNESS = LIBRARY + "GestureReplay";
+
+	// Stop listing sites after this many; the count carries on
+	private static final int MAX_SITES = 20;
+
+	private static LibraryAllocations sInstance;
+
+	private volatile Thread mThread;
+	private boolean mProbing;
+	private boolean mAvailable;
+
+	private int mCount;
+	private final List<String> mSites = new ArrayList<String>();
+
+	private LibraryAllocations() {
+	}
+
+	static synchronized LibraryAllocations getInstance() {
+		if (sInstance == null) {
+			sInstance = new LibraryAllocations();
+			AllocationRecorder.addSampler(sInstance);
+			sInstance.probe();
+		}
+		return sInstance;
+	}
+
+	// An allocation the agent has to see, if it's there
+	private void probe() {
+		mThread = Thread.currentThread();
+		mProbing = true;
+		mSites.add(String.valueOf(mThread.getId()));
+		mProbing = false;
+		mThread = null;
+		mSites.clear();
+	}
+
+	boolean isAvailable() {
+		return mAvailable;
+	}
+
+	void start() {
+		mCount = 0;
+		mSites.clear();
+		mThread = Thread.currentThread();
+	}
+
+	void stop() {
+		mThread = null;
+	}
+
+	int getCount() {
+		return mCount;
+	}
+
+	List<String> getSites() {
+		return mSites;
+	}
+
+	@Override
+	public void sampleAllocation(int count, String desc, Object newObj, long size) {
+		if (Thread.currentThread() != mThread) {
+			return;
+		}
+		if (mProbing) {
+			mAvailable = true;
+			return;
+		}
+
+		// Walk out of the recorder and the JDK to whoever asked for it
+		final StackTraceElement[] stack = new Throwable().getStackTrace();
+		for (StackTraceElement element : stack) {
+			final String name = element.getClassName();
+			if (name.startsWith("com.google.monitoring.")
+					|| name.startsWith("java.") || name.startsWith("sun.")
+					|| name.equals(LibraryAllocations.class.getName())) {
+				continue;
+			}
+			if (name.startsWith(LIBRARY) && !name.startsWith(HARNESS)) {
+				mCount++;
+				if (mSites.size() < MAX_SITES) {
+					mSites.add(desc + " at " + element);
+				}
+			}
+			return;
+		}
+	}
+}
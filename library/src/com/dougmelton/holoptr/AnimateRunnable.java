@@ -1,84 +1,190 @@
 package com.dougmelton.holoptr;
 
-import android.view.View;
-import android.view.animation.AccelerateDecelerateInterpolator;
 import android.view.animation.Interpolator;
 
-final class AnimateRunnable implements Runnable {
+import com.dougmelton.holoptr.FrameClock.FrameListener;
+
+/**
+ * A reusable animation channel. Each call to {@link #start} or
+ * {@link #startSpring} restarts the channel with new endpoints and a new
+ * handler, so a view can run any number of animations without allocating.
+ */
+final class AnimateRunnable implements FrameListener {
 
 	static final int ANIMATION_DURATION_MS = 200;
-	static final int ANIMATION_DELAY = 10;
 
-	// So that we can mView.post and mView.removeCallbacks
-	private final View mView;
+	private static final long ANIMATION_DURATION_NS = ANIMATION_DURATION_MS * 1000000L;
+
+	/** Settles a full pull in about ANIMATION_DURATION_MS, and a short one sooner */
+	static final float SPRING_FREQUENCY = 40f;
 
+	// All animations are driven by the one shared frame clock
+	private final FrameClock mClock;
+
+	// Exactly one of these is set: a shared table for the default curve, or a custom curve
+	private final CurveTable mCurve;
 	private final Interpolator mInterpolator;
-	private final int mTo;
-	private final int mFrom;
+	private final Spring mSpring = new Spring(SPRING_FREQUENCY);
+	private boolean mSpringing = false;
+	private int mTo;
+	private int mFrom;
 
-	private boolean mIsStopped = false;
+	private boolean mIsStopped = true;
 
 	private long mStartTime = -1;
+	private long mLastFrameTime = -1;
 	private int mCurrent = -1;
 	private OnTickHandler mTickHandler = null;
 
-	public AnimateRunnable(View view, int fromY, int toY, OnTickHandler tickHandler) {
-		this(view, fromY, toY, new AccelerateDecelerateInterpolator(), tickHandler);
+	private PullMetrics mMetrics = null;
+	private boolean mTraceEnabled = false;
+
+	/**
+	 * A channel on the AccelerateDecelerateInterpolator curve, evaluated from a
+	 * precomputed table.
+	 */
+	public AnimateRunnable() {
+		mClock = FrameClock.getInstance();
+		mCurve = CurveTable.ACCELERATE_DECELERATE;
+		mInterpolator = null;
+	}
+
+	public AnimateRunnable(Interpolator interpolator) {
+		mClock = FrameClock.getInstance();
+		mCurve = null;
+		mInterpolator = interpolator;
+	}
+
+	/**
+	 * (Re)start this channel, animating from fromY to toY starting on the next
+	 * frame. Any animation already running on this channel is abandoned without
+	 * calling its {@link OnTickHandler#done()}.
+	 */
+	public void start(int fromY, int toY, OnTickHandler tickHandler) {
+		mSpringing = false;
+		restart(fromY, toY, tickHandler);
 	}
 
-	public AnimateRunnable(View view, int fromY, int toY, Interpolator interpolator, OnTickHandler tickHandler) {
-		mView = view;
+	/**
+	 * (Re)start this channel on a spring from fromY to toY, so the animation takes
+	 * as long as the distance and starting velocity call for, rather than a fixed
+	 * duration.
+	 *
+	 * @param velocity The starting velocity, in pixels per second; positive is
+	 *            towards larger values
+	 * @param overshoot Whether the velocity may carry it past toY and back;
+	 *            otherwise it stops there
+	 */
+	public void startSpring(int fromY, int toY, float velocity, boolean overshoot, OnTickHandler tickHandler) {
+		mSpring.set(fromY, toY, velocity, !overshoot);
+		mSpringing = true;
+		restart(fromY, toY, tickHandler);
+	}
+
+	private void restart(int fromY, int toY, OnTickHandler tickHandler) {
 		mFrom = fromY;
 		mTo = toY;
-		mInterpolator = interpolator;
 		mTickHandler = tickHandler;
+		mStartTime = -1;
+		mLastFrameTime = -1;
+		mCurrent = -1;
+		mIsStopped = false;
+		mClock.add(this);
+	}
+
+	/**
+	 * Record frame timings for every animation run on this channel, or null to stop
+	 */
+	public void setMetrics(PullMetrics metrics) {
+		mMetrics = metrics;
+	}
+
+	public void setTraceEnabled(boolean enabled) {
+		mTraceEnabled = enabled;
 	}
 
 	@Override
-	public void run() {
+	public void doFrame(long frameTimeNanos) {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.ANIMATION_TICK);
+
+		final long lastFrameTime = mLastFrameTime;
+		if (mMetrics != null && lastFrameTime != -1) {
+			mMetrics.recordFrame(frameTimeNanos - lastFrameTime);
+		}
+		mLastFrameTime = frameTimeNanos;
 
 		/**
-		 * Only set mStartTime if this is the first time we're starting,
+		 * Only set mStartTime if this is the first frame we've been given,
 		 * else actually calculate the Y delta
 		 */
 		if (mStartTime == -1) {
-			mStartTime = System.currentTimeMillis();
+			mStartTime = frameTimeNanos;
+		}
+		else if (mSpringing) {
+			mSpring.advance(frameTimeNanos - lastFrameTime);
+			mCurrent = mSpring.isAtRest() ? mTo : Math.round(mSpring.getPosition());
+			mTickHandler.tick(mCurrent);
 		}
 		else {
 
-			/**
-			 * We do do all calculations in long to reduce software float
-			 * calculations. We use 1000 as it gives us good accuracy and
-			 * small rounding errors
-			 */
-			long normalizedTime = (1000 * (System.currentTimeMillis() - mStartTime)) / ANIMATION_DURATION_MS;
-			normalizedTime = Math.max(Math.min(normalizedTime, 1000), 0);
-
-			final int deltaY = Math.round((mFrom - mTo)
-					* mInterpolator.getInterpolation(normalizedTime / 1000f));
-			mCurrent = mFrom - deltaY;
+			final long normalizedTime = PullMath.normalizedTime(frameTimeNanos - mStartTime, ANIMATION_DURATION_NS);
+			if (mCurve != null) {
+				mCurrent = CurveTable.interpolate(mFrom, mTo, mCurve.evaluate((int) normalizedTime));
+			}
+			else {
+				mCurrent = PullMath.interpolate(mFrom, mTo,
+						mInterpolator.getInterpolation(normalizedTime / (float) PullMath.NORMALIZED_ONE));
+			}
 			mTickHandler.tick(mCurrent);
 		}
 
-		// If we're not at the target Y, keep going...
-		if (mTo != mCurrent) {
-			// if (VERSION.SDK_INT >= VERSION_CODES.JELLY_BEAN) {
-			// SDK16.postOnAnimation(PullToRefreshBase.this, this);
-			// } else {
-			mView.postDelayed(this, ANIMATION_DELAY);
-			// }
-		}
-		else {
-			mView.removeCallbacks(this);
+		// Once we're at the target Y, stop listening for frames. A spring may pass
+		// through the target on its way, so it's only done once it's settled
+		if (mSpringing ? mSpring.isAtRest() : mTo == mCurrent) {
+			mCurrent = mTo;
+			mClock.remove(this);
 			mIsStopped = true;
 			mTickHandler.done();
 		}
+
+		Tracer.end(traced);
+	}
+
+	/**
+	 * Stop the running animation where it is, without calling its
+	 * {@link OnTickHandler#done()}, so that another can pick up from
+	 * {@link #getCurrent()}.
+	 */
+	public void cancel() {
+		mClock.remove(this);
+		mIsStopped = true;
 	}
 
 	public boolean isStopped() {
 		return mIsStopped;
 	}
 
+	/**
+	 * The last value ticked, or the start value if no frame has ticked yet
+	 */
+	public int getCurrent() {
+		return mCurrent == -1 ? mFrom : mCurrent;
+	}
+
+	/**
+	 * The velocity of a running spring, in pixels per second, or 0 otherwise
+	 */
+	public float getVelocity() {
+		return mSpringing && !mIsStopped ? mSpring.getVelocity() : 0f;
+	}
+
+	/**
+	 * The handler of the running (or last) animation
+	 */
+	public OnTickHandler getTickHandler() {
+		return mTickHandler;
+	}
+
 	public interface OnTickHandler {
 		public void tick(int y);
 
@@ -42,29 +42,16 @@ public final class AnimatorProxy extends Animation {
 	}
 
 	private final WeakReference<View> mView;
-	private final Camera mCamera = new Camera();
-	private boolean mHasPivot;
+	private final ProxyTransform<Matrix, RectF> mTransform;
 
 	private float mAlpha = 1;
-	private float mPivotX;
-	private float mPivotY;
-	private float mRotationX;
-	private float mRotationY;
-	private float mRotationZ;
-	private float mScaleX = 1;
-	private float mScaleY = 1;
-	private float mTranslationX;
-	private float mTranslationY;
-
-	private final RectF mBefore = new RectF();
-	private final RectF mAfter = new RectF();
-	private final Matrix mTempMatrix = new Matrix();
 
 	private AnimatorProxy(View view) {
 		setDuration(0); //perform transformation immediately
 		setFillAfter(true); //persist transformation beyond duration
 		view.setAnimation(this);
 		mView = new WeakReference<View>(view);
+		mTransform = new ProxyTransform<Matrix, RectF>(GRAPHICS, new ViewHost());
 	}
 
 	public float getAlpha() {
@@ -82,89 +69,69 @@ public final class AnimatorProxy extends Animation {
 	}
 
 	public float getPivotX() {
-		return mPivotX;
+		return mTransform.getPivotX();
 	}
 
 	public void setPivotX(float pivotX) {
-		if (!mHasPivot || mPivotX != pivotX) {
-			prepareForUpdate();
-			mHasPivot = true;
-			mPivotX = pivotX;
-			invalidateAfterUpdate();
-		}
+		mTransform.setPivotX(pivotX);
 	}
 
 	public float getPivotY() {
-		return mPivotY;
+		return mTransform.getPivotY();
 	}
 
 	public void setPivotY(float pivotY) {
-		if (!mHasPivot || mPivotY != pivotY) {
-			prepareForUpdate();
-			mHasPivot = true;
-			mPivotY = pivotY;
-			invalidateAfterUpdate();
-		}
+		mTransform.setPivotY(pivotY);
 	}
 
 	public float getRotation() {
-		return mRotationZ;
+		return mTransform.getRotation();
 	}
 
 	public void setRotation(float rotation) {
-		if (mRotationZ != rotation) {
-			prepareForUpdate();
-			mRotationZ = rotation;
-			invalidateAfterUpdate();
-		}
+		mTransform.setRotation(rotation);
 	}
 
 	public float getRotationX() {
-		return mRotationX;
+		return mTransform.getRotationX();
 	}
 
 	public void setRotationX(float rotationX) {
-		if (mRotationX != rotationX) {
-			prepareForUpdate();
-			mRotationX = rotationX;
-			invalidateAfterUpdate();
-		}
+		mTransform.setRotationX(rotationX);
 	}
 
 	public float getRotationY() {
-		return mRotationY;
+		return mTransform.getRotationY();
 	}
 
 	public void setRotationY(float rotationY) {
-		if (mRotationY != rotationY) {
-			prepareForUpdate();
-			mRotationY = rotationY;
-			invalidateAfterUpdate();
-		}
+		mTransform.setRotationY(rotationY);
 	}
 
 	public float getScaleX() {
-		return mScaleX;
+		return mTransform.getScaleX();
 	}
 
 	public void setScaleX(float scaleX) {
-		if (mScaleX != scaleX) {
-			prepareForUpdate();
-			mScaleX = scaleX;
-			invalidateAfterUpdate();
-		}
+		mTransform.setScaleX(scaleX);
 	}
 
 	public float getScaleY() {
-		return mScaleY;
+		return mTransform.getScaleY();
 	}
 
 	public void setScaleY(float scaleY) {
-		if (mScaleY != scaleY) {
-			prepareForUpdate();
-			mScaleY = scaleY;
-			invalidateAfterUpdate();
-		}
+		mTransform.setScaleY(scaleY);
+	}
+
+	/**
+	 * Set the pull tilt for the given offset: pivot on the top center, rotate
+	 * back around X and scale up, all in one update and invalidate. The
+	 * transform and its bounds are cached per offset rather than being worked
+	 * out again every frame.
+	 */
+	void setSkew(SkewTable table, int offset, float pivotX) {
+		mTransform.setSkew(table, offset, pivotX);
 	}
 
 	public int getScrollX() {
@@ -198,27 +165,19 @@ public final class AnimatorProxy extends Animation {
 	}
 
 	public float getTranslationX() {
-		return mTranslationX;
+		return mTransform.getTranslationX();
 	}
 
 	public void setTranslationX(float translationX) {
-		if (mTranslationX != translationX) {
-			prepareForUpdate();
-			mTranslationX = translationX;
-			invalidateAfterUpdate();
-		}
+		mTransform.setTranslationX(translationX);
 	}
 
 	public float getTranslationY() {
-		return mTranslationY;
+		return mTransform.getTranslationY();
 	}
 
 	public void setTranslationY(float translationY) {
-		if (mTranslationY != translationY) {
-			prepareForUpdate();
-			mTranslationY = translationY;
-			invalidateAfterUpdate();
-		}
+		mTransform.setTranslationY(translationY);
 	}
 
 	public float getX() {
@@ -226,7 +185,7 @@ public final class AnimatorProxy extends Animation {
 		if (view == null) {
 			return 0;
 		}
-		return view.getLeft() + mTranslationX;
+		return view.getLeft() + getTranslationX();
 	}
 
 	public void setX(float x) {
@@ -241,7 +200,7 @@ public final class AnimatorProxy extends Animation {
 		if (view == null) {
 			return 0;
 		}
-		return view.getTop() + mTranslationY;
+		return view.getTop() + getTranslationY();
 	}
 
 	public void setY(float y) {
@@ -251,98 +210,164 @@ public final class AnimatorProxy extends Animation {
 		}
 	}
 
-	private void prepareForUpdate() {
+	/**
+	 * Start a batch of property changes. Until the matching
+	 * {@link #commitUpdate()}, setters only record their values; the first
+	 * change takes the rect before, and the commit takes the rect after and
+	 * invalidates their union once. Batches may nest; only the outermost
+	 * commit invalidates.
+	 */
+	public void beginUpdate() {
+		mTransform.beginUpdate();
+	}
+
+	/**
+	 * End a batch started with {@link #beginUpdate()}, invalidating once if
+	 * anything in it changed.
+	 */
+	public void commitUpdate() {
+		mTransform.commitUpdate();
+	}
+
+	@Override
+	protected void applyTransformation(float interpolatedTime, Transformation t) {
 		View view = mView.get();
 		if (view != null) {
-			computeRect(mBefore, view);
+			t.setAlpha(mAlpha);
+			mTransform.transformMatrix(t.getMatrix());
 		}
 	}
 
-	private void invalidateAfterUpdate() {
-		View view = mView.get();
-		if (view == null || view.getParent() == null) {
-			return;
+	private final class ViewHost implements ProxyTransform.Host<RectF> {
+		@Override
+		public boolean hasView() {
+			return mView.get() != null;
 		}
 
-		final RectF after = mAfter;
-		computeRect(after, view);
-		after.union(mBefore);
+		@Override
+		public int getLeft() {
+			final View view = mView.get();
+			return view != null ? view.getLeft() : 0;
+		}
 
-		((View) view.getParent()).invalidate(
-				(int) Math.floor(after.left),
-				(int) Math.floor(after.top),
-				(int) Math.ceil(after.right),
-				(int) Math.ceil(after.bottom));
-	}
+		@Override
+		public int getTop() {
+			final View view = mView.get();
+			return view != null ? view.getTop() : 0;
+		}
 
-	private void computeRect(final RectF r, View view) {
-		// compute current rectangle according to matrix transformation
-		final float w = view.getWidth();
-		final float h = view.getHeight();
+		@Override
+		public int getWidth() {
+			final View view = mView.get();
+			return view != null ? view.getWidth() : 0;
+		}
 
-		// use a rectangle at 0,0 to make sure we don't run into issues with scaling
-		r.set(0, 0, w, h);
+		@Override
+		public int getHeight() {
+			final View view = mView.get();
+			return view != null ? view.getHeight() : 0;
+		}
 
-		final Matrix m = mTempMatrix;
-		m.reset();
-		transformMatrix(m, view);
-		mTempMatrix.mapRect(r);
+		@Override
+		public boolean canInvalidate() {
+			final View view = mView.get();
+			return view != null && view.getParent() != null;
+		}
 
-		r.offset(view.getLeft(), view.getTop());
+		@Override
+		public void invalidate(RectF dirty) {
+			final View view = mView.get();
+			if (view != null && view.getParent() != null) {
+				((View) view.getParent()).invalidate(
+						(int) Math.floor(dirty.left),
+						(int) Math.floor(dirty.top),
+						(int) Math.ceil(dirty.right),
+						(int) Math.ceil(dirty.bottom));
+			}
+		}
+	}
+
+	// Every proxy is on the UI thread, so they can share the one Camera; only made once one rotates
+	private static final TransformOps<Matrix, RectF> GRAPHICS = new TransformOps<Matrix, RectF>() {
+		private Camera mCamera;
 
-		// Straighten coords if rotations flipped them
-		if (r.right < r.left) {
-			final float f = r.right;
-			r.right = r.left;
-			r.left = f;
+		@Override
+		public Matrix newMatrix() {
+			return new Matrix();
 		}
-		if (r.bottom < r.top) {
-			final float f = r.top;
-			r.top = r.bottom;
-			r.bottom = f;
+
+		@Override
+		public RectF newRect() {
+			return new RectF();
 		}
-	}
 
-	private void transformMatrix(Matrix m, View view) {
-		final float w = view.getWidth();
-		final float h = view.getHeight();
-		final boolean hasPivot = mHasPivot;
-		final float pX = hasPivot ? mPivotX : w / 2f;
-		final float pY = hasPivot ? mPivotY : h / 2f;
+		@Override
+		public void reset(Matrix m) {
+			m.reset();
+		}
 
-		final float rX = mRotationX;
-		final float rY = mRotationY;
-		final float rZ = mRotationZ;
-		if ((rX != 0) || (rY != 0) || (rZ != 0)) {
+		@Override
+		public void setMatrix(Matrix m, Matrix src) {
+			m.set(src);
+		}
+
+		@Override
+		public void setCameraRotate(Matrix m, float rotationX, float rotationY, float rotationZ) {
+			if (mCamera == null) {
+				mCamera = new Camera();
+			}
 			final Camera camera = mCamera;
 			camera.save();
-			camera.rotateX(rX);
-			camera.rotateY(rY);
-			camera.rotateZ(-rZ);
+			camera.rotateX(rotationX);
+			camera.rotateY(rotationY);
+			camera.rotateZ(rotationZ);
 			camera.getMatrix(m);
 			camera.restore();
-			m.preTranslate(-pX, -pY);
-			m.postTranslate(pX, pY);
 		}
 
-		final float sX = mScaleX;
-		final float sY = mScaleY;
-		if ((sX != 1.0f) || (sY != 1.0f)) {
-			m.postScale(sX, sY);
-			final float sPX = -(pX / w) * ((sX * w) - w);
-			final float sPY = -(pY / h) * ((sY * h) - h);
-			m.postTranslate(sPX, sPY);
+		@Override
+		public void preTranslate(Matrix m, float dx, float dy) {
+			m.preTranslate(dx, dy);
 		}
 
-		m.postTranslate(mTranslationX, mTranslationY);
-	}
+		@Override
+		public void postTranslate(Matrix m, float dx, float dy) {
+			m.postTranslate(dx, dy);
+		}
 
-	@Override
-	protected void applyTransformation(float interpolatedTime, Transformation t) {
-		View view = mView.get();
-		if (view != null) {
-			t.setAlpha(mAlpha);
-			transformMatrix(t.getMatrix(), view);
+		@Override
+		public void postScale(Matrix m, float sx, float sy) {
+			m.postScale(sx, sy);
 		}
-	}
+
+		@Override
+		public void mapRect(Matrix m, RectF r) {
+			m.mapRect(r);
+		}
+
+		@Override
+		public void setRect(RectF r, float left, float top, float right, float bottom) {
+			r.set(left, top, right, bottom);
+		}
+
+		@Override
+		public void setRect(RectF r, RectF src) {
+			r.set(src);
+		}
+
+		@Override
+		public void offset(RectF r, float dx, float dy) {
+			r.offset(dx, dy);
+		}
+
+		@Override
+		public void union(RectF r, RectF other) {
+			r.union(other);
+		}
+
+		@Override
+		public void sort(RectF r) {
+			r.sort();
+		}
+	};
 }
@@ -0,0 +1,75 @@
+package com.dougmelton.holoptr;
+
+/**
+ * A curve sampled into a fixed-point lookup table, evaluated by linear
+ * interpolation between samples. The tables are built once per process and
+ * shared, and evaluating one is a couple of array reads, a multiply and a shift,
+ * with no floating point or virtual calls. Like {@link PullMath}, it's free of
+ * Android classes.
+ */
+final class CurveTable {
+
+	/** Values are fixed point, with this many fractional bits */
+	static final int FRACTION_BITS = 16;
+	static final int ONE = 1 << FRACTION_BITS;
+
+	private static final int HALF = ONE >> 1;
+
+	/**
+	 * AccelerateDecelerateInterpolator, over a normalized time of
+	 * 0..{@link PullMath#NORMALIZED_ONE}
+	 */
+	static final CurveTable ACCELERATE_DECELERATE = buildAccelerateDecelerate();
+
+	private final int[] mTable;
+	private final int mSegmentShift;
+	private final int mSegmentMask;
+	private final int mMaxInput;
+
+	/**
+	 * @param table The curve's value at each segment boundary, in fixed point
+	 * @param segmentShift log2 of the input units per segment
+	 */
+	private CurveTable(int[] table, int segmentShift) {
+		mTable = table;
+		mSegmentShift = segmentShift;
+		mSegmentMask = (1 << segmentShift) - 1;
+		mMaxInput = (table.length - 1) << segmentShift;
+	}
+
+	/**
+	 * The curve's value at the given input, in fixed point. Inputs outside the
+	 * table are clamped to its ends.
+	 */
+	int evaluate(int input) {
+		if (input <= 0) {
+			return mTable[0];
+		}
+		if (input >= mMaxInput) {
+			return mTable[mTable.length - 1];
+		}
+		final int i = input >> mSegmentShift;
+		final int a = mTable[i];
+		final int b = mTable[i + 1];
+		return a + (int) (((long) (b - a) * (input & mSegmentMask)) >> mSegmentShift);
+	}
+
+	/**
+	 * The value between from and to at the given fixed-point fraction, rounded
+	 * the same way as {@link PullMath#interpolate(int, int, float)}.
+	 */
+	static int interpolate(int from, int to, int fraction) {
+		return from - (int) (((long) (from - to) * fraction + HALF) >> FRACTION_BITS);
+	}
+
+	private static CurveTable buildAccelerateDecelerate() {
+		// Every 8 per mille; 1000 divides evenly
+		final int shift = 3;
+		final int[] table = new int[(PullMath.NORMALIZED_ONE >> shift) + 1];
+		for (int i = 0; i < table.length; i++) {
+			final double t = (double) (i << shift) / PullMath.NORMALIZED_ONE;
+			table[i] = (int) Math.round((Math.cos((t + 1) * Math.PI) / 2.0 + 0.5) * ONE);
+		}
+		return new CurveTable(table, shift);
+	}
+}
@@ -0,0 +1,234 @@
+package com.dougmelton.holoptr;
+
+import java.util.ArrayList;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * A single, UI-thread frame clock shared by every pull-to-refresh animation.
+ * On Jelly Bean and later it ticks once per vsync off the Choreographer frame
+ * timestamp. On older platforms it falls back to a Handler loop.
+ */
+final class FrameClock {
+
+	static final int FALLBACK_FRAME_DELAY = 10;
+
+	private static final boolean HAS_CHOREOGRAPHER = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
+
+	private static FrameClock sInstance;
+
+	/**
+	 * Returns the frame clock for the UI thread. Must be called from the UI thread.
+	 */
+	public static FrameClock getInstance() {
+		if (sInstance == null) {
+			sInstance = new FrameClock();
+		}
+		return sInstance;
+	}
+
+	private final ArrayList<FrameListener> mListeners = new ArrayList<FrameListener>();
+	private FrameListener[] mDispatching = new FrameListener[4];
+	private boolean mScheduled = false;
+	private boolean mManual = false;
+
+	private final FrameSource mSource;
+	private TimeSource mTimeSource = SYSTEM_TIME;
+
+	private FrameClock() {
+		mSource = HAS_CHOREOGRAPHER ? new ChoreographerSource(this) : new HandlerSource(this);
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Time
+
+	/**
+	 * A monotonic, nanosecond time source. Frame timestamps and any time read
+	 * through {@link FrameClock#nanoTime()} share its time base.
+	 */
+	public interface TimeSource {
+		public long nanoTime();
+	}
+
+	static final TimeSource SYSTEM_TIME = new TimeSource() {
+		@Override
+		public long nanoTime() {
+			// Same time base as Choreographer's frame timestamps
+			return System.nanoTime();
+		}
+	};
+
+	/**
+	 * Replace the time source, e.g. with one a headless harness can step exactly.
+	 * Choreographer frames always carry their own vsync timestamp, so this only
+	 * makes sense combined with {@link #setManual(boolean)} or on the Handler
+	 * fallback.
+	 */
+	void setTimeSource(TimeSource source) {
+		mTimeSource = source != null ? source : SYSTEM_TIME;
+	}
+
+	TimeSource getTimeSource() {
+		return mTimeSource;
+	}
+
+	/**
+	 * The current time, in the same time base as frame timestamps
+	 */
+	public long nanoTime() {
+		return mTimeSource.nanoTime();
+	}
+
+	/**
+	 * Start delivering frames to the given listener, starting with the next frame.
+	 */
+	public void add(FrameListener listener) {
+		if (!mListeners.contains(listener)) {
+			mListeners.add(listener);
+		}
+		schedule();
+	}
+
+	/**
+	 * Stop delivering frames to the given listener. Safe to call from within
+	 * {@link FrameListener#doFrame(long)}.
+	 */
+	public void remove(FrameListener listener) {
+		mListeners.remove(listener);
+	}
+
+	public boolean isRunning(FrameListener listener) {
+		return mListeners.contains(listener);
+	}
+
+	/**
+	 * Stop asking the platform for frames; frames are only delivered through
+	 * {@link #step(long)}. Lets a harness replay gestures and animations
+	 * deterministically, without a display.
+	 */
+	void setManual(boolean manual) {
+		mManual = manual;
+		if (!manual) {
+			schedule();
+		}
+	}
+
+	boolean isManual() {
+		return mManual;
+	}
+
+	/**
+	 * Deliver one frame with the given timestamp. Only meant for manual mode.
+	 */
+	void step(long frameTimeNanos) {
+		doFrame(frameTimeNanos);
+	}
+
+	/**
+	 * Deliver one frame stamped with the time source's current time. Only meant
+	 * for manual mode, with a time source the caller advances between steps.
+	 */
+	void step() {
+		doFrame(mTimeSource.nanoTime());
+	}
+
+	/**
+	 * Whether anything is waiting on the next frame, i.e. whether a harness
+	 * stepping this clock has reached the end of all animations.
+	 */
+	boolean hasListeners() {
+		return !mListeners.isEmpty();
+	}
+
+	private void schedule() {
+		if (mManual) {
+			return;
+		}
+		if (!mScheduled && !mListeners.isEmpty()) {
+			mScheduled = true;
+			mSource.postFrame();
+		}
+	}
+
+	void doFrame(long frameTimeNanos) {
+		mScheduled = false;
+
+		// Dispatch from a snapshot so that listeners may add or remove themselves
+		final int count = mListeners.size();
+		if (mDispatching.length < count) {
+			mDispatching = new FrameListener[count * 2];
+		}
+		final FrameListener[] dispatching = mListeners.toArray(mDispatching);
+		for (int i = 0; i < count; i++) {
+			final FrameListener listener = dispatching[i];
+			dispatching[i] = null;
+			if (mListeners.contains(listener)) {
+				listener.doFrame(frameTimeNanos);
+			}
+		}
+
+		schedule();
+	}
+
+	public interface FrameListener {
+		/**
+		 * Called once per frame.
+		 * @param frameTimeNanos the frame timestamp, in the {@link FrameClock#nanoTime()} time base
+		 */
+		public void doFrame(long frameTimeNanos);
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Frame sources
+
+	private static interface FrameSource {
+		public void postFrame();
+	}
+
+	// Kept in its own class so that Choreographer is never loaded before Jelly Bean
+	private static final class ChoreographerSource implements FrameSource, Choreographer.FrameCallback {
+		private final FrameClock mClock;
+		private final Choreographer mChoreographer = Choreographer.getInstance();
+
+		public ChoreographerSource(FrameClock clock) {
+			mClock = clock;
+		}
+
+		@Override
+		public void postFrame() {
+			mChoreographer.postFrameCallback(this);
+		}
+
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			mClock.doFrame(frameTimeNanos);
+		}
+	}
+
+	private static final class HandlerSource implements FrameSource, Runnable {
+		private final FrameClock mClock;
+		private final Handler mHandler = new Handler(Looper.getMainLooper());
+		private long mLastFrameTime = 0;
+
+		public HandlerSource(FrameClock clock) {
+			mClock = clock;
+		}
+
+		@Override
+		public void postFrame() {
+			// Don't let back-to-back frames run faster than the old animation loop
+			long now = mClock.nanoTime();
+			long delay = FALLBACK_FRAME_DELAY - (now - mLastFrameTime) / 1000000L;
+			mHandler.postDelayed(this, Math.max(0, Math.min(delay, FALLBACK_FRAME_DELAY)));
+		}
+
+		@Override
+		public void run() {
+			mLastFrameTime = mClock.nanoTime();
+			mClock.doFrame(mLastFrameTime);
+		}
+	}
+}
@@ -1,21 +1,14 @@
 package com.dougmelton.holoptr;
 
-import java.io.BufferedOutputStream;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-
 import android.content.Context;
-import android.content.res.Resources.NotFoundException;
 import android.graphics.Color;
 import android.graphics.Typeface;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 import android.view.animation.AlphaAnimation;
 import android.view.animation.Animation;
+import android.view.animation.Interpolator;
 import android.view.animation.LinearInterpolator;
 import android.view.animation.RotateAnimation;
 import android.widget.FrameLayout;
@@ -23,6 +16,7 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import com.dougmelton.holoptr.AnimateRunnable.OnTickHandler;
+import com.dougmelton.holoptr.TypefaceCache.OnTypefaceLoadedListener;
 
 public class HoloPullToRefreshHeaderView extends FrameLayout {
 	private static final String TAG = HoloPullToRefreshHeaderView.class.getSimpleName();
@@ -36,6 +30,8 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 	private int mInstructionTranslationX = 0;
 	private int mSpinnerTranslationX = 0;
 
+	private boolean mTraceEnabled = false;
+
 	public HoloPullToRefreshHeaderView(Context context) {
 		this(context, null);
 	}
@@ -56,10 +52,8 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 		this.addView(mSpinner);
 
 		// "Pull to refresh."
-		final Typeface type = getFontFromRes(R.raw.roboto_light);
 		mPullToRefresh = new TextView(context);
 		mPullToRefresh.setText(R.string.hptr_Pull_to_refresh);
-		mPullToRefresh.setTypeface(type);
 		mPullToRefresh.setTextSize(24);
 		mPullToRefresh.setTextColor(Color.BLACK);
 		mPullToRefresh.setGravity(Gravity.CENTER_VERTICAL);
@@ -70,15 +64,25 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 		mReleaseToRefresh = new TextView(context);
 		mReleaseToRefresh.setText(R.string.hptr_Release_to_refresh);
 		mReleaseToRefresh.setTextSize(24);
-		mReleaseToRefresh.setTypeface(type);
 		mReleaseToRefresh.setTextColor(Color.BLACK);
 		mReleaseToRefresh.setGravity(Gravity.CENTER_VERTICAL);
 		mReleaseToRefresh.setVisibility(View.INVISIBLE);
 		this.addView(mReleaseToRefresh);
 
+		// Roboto Light is loaded once per process, off the UI thread
+		TypefaceCache.getRobotoLight(context, mTypefaceListener);
+
 		rest();
 	}
 
+	private final OnTypefaceLoadedListener mTypefaceListener = new OnTypefaceLoadedListener() {
+		@Override
+		public void onTypefaceLoaded(Typeface typeface) {
+			mPullToRefresh.setTypeface(typeface);
+			mReleaseToRefresh.setTypeface(typeface);
+		}
+	};
+
 	/**
 	 * Returns a set of layout parameters with a width of
 	 * {@link android.view.ViewGroup.LayoutParams#WRAP_CONTENT},
@@ -113,6 +117,7 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 	 */
 	@Override
 	protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.HEADER_LAYOUT);
 
 		// Find width of (pull to refresh) union (release to refresh)
 		int textWidth = Math.max(mPullToRefresh.getMeasuredWidth(), mReleaseToRefresh.getMeasuredWidth());
@@ -129,27 +134,75 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 		textLeft += mInstructionTranslationX;
 		mPullToRefresh.layout(textLeft, top, textLeft + textWidth, bottom);
 		mReleaseToRefresh.layout(textLeft, top, textLeft + textWidth, bottom);
+
+		Tracer.end(traced);
+	}
+
+	void setTraceEnabled(boolean enabled) {
+		mTraceEnabled = enabled;
+		mAnimation.setTraceEnabled(enabled);
 	}
 
 	public void stopSpinning() {
+		// A slide still running would start the spinner again when it finishes
+		mAnimation.cancel();
 		mSpinner.clearAnimation();
 	}
 
 	public void rest() {
-		mInstructionTranslationX = 0;
-		mSpinnerTranslationX = 0;
+		mAnimation.cancel();
+		setInstructionTranslationX(0);
+		setSpinnerTranslationX(0);
 		mSpinner.clearAnimation();
 		mReleaseToRefresh.clearAnimation();
 		mSpinner.setVisibility(View.INVISIBLE);
 		mPullToRefresh.setVisibility(View.INVISIBLE);
 		mReleaseToRefresh.setVisibility(View.INVISIBLE);
-		requestLayout();
+	}
+
+	/**
+	 * Slide the children horizontally without a layout pass. onLayout() folds the
+	 * current translation back in, so a layout mid-slide keeps them in place.
+	 */
+	private void setInstructionTranslationX(int x) {
+		final int dx = x - mInstructionTranslationX;
+		if (dx != 0) {
+			mPullToRefresh.offsetLeftAndRight(dx);
+			mReleaseToRefresh.offsetLeftAndRight(dx);
+			mInstructionTranslationX = x;
+			invalidate();
+		}
+	}
+
+	// For a harness to check the header really went back to rest
+	int getInstructionTranslationX() {
+		return mInstructionTranslationX;
+	}
+
+	int getSpinnerTranslationX() {
+		return mSpinnerTranslationX;
+	}
+
+	boolean isSpinning() {
+		return mSpinner.getAnimation() != null;
+	}
+
+	boolean isPullToRefreshVisible() {
+		return mPullToRefresh.getVisibility() == View.VISIBLE;
+	}
+
+	private void setSpinnerTranslationX(int x) {
+		final int dx = x - mSpinnerTranslationX;
+		if (dx != 0) {
+			mSpinner.offsetLeftAndRight(dx);
+			mSpinnerTranslationX = x;
+			invalidate();
+		}
 	}
 
 	public void pullToRefresh(boolean animated) {
 		mSpinner.setVisibility(View.VISIBLE);
 		stopSpinning();
-		requestLayout();
 		if (animated) {
 			crossfade(mReleaseToRefresh, mPullToRefresh);
 		}
@@ -161,7 +214,6 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 
 	public void releaseToRefresh(boolean animated) {
 		mSpinner.setVisibility(View.VISIBLE);
-		requestLayout();
 		if (animated) {
 			crossfade(mPullToRefresh, mReleaseToRefresh);
 		}
@@ -174,36 +226,42 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 	public void refresh(boolean animated) {
 		mSpinner.setVisibility(View.VISIBLE);
 
-		final int instructionEndX = getWidth() - mReleaseToRefresh.getLeft();
-		final int spinnerEndX = (getWidth() + mSpinner.getWidth()) / 2 - mSpinner.getRight();
+		mInstructionEndX = getWidth() - mReleaseToRefresh.getLeft();
+		mSpinnerEndX = (getWidth() + mSpinner.getWidth()) / 2 - mSpinner.getRight();
 
 		// Slide "release to refresh" off the screen
 		// Slide refresh icon to the middle
 
-		animate(0, 1000, animated, new OnTickHandler() {
-			@Override
-			public void tick(int y) {
-				mInstructionTranslationX = y * instructionEndX / 1000;
-				mSpinnerTranslationX = y * spinnerEndX / 1000;
-				requestLayout();
-			}
-
-			@Override
-			public void done() {
-				mInstructionTranslationX = instructionEndX;
-				mSpinnerTranslationX = spinnerEndX;
-				mPullToRefresh.setVisibility(View.INVISIBLE);
-				mReleaseToRefresh.setVisibility(View.INVISIBLE);
-				spin();
-				requestLayout();
-			}
-		});
+		animate(0, 1000, animated, mRefreshTicker);
 
 	}
 
+	private int mInstructionEndX;
+	private int mSpinnerEndX;
+
+	private final OnTickHandler mRefreshTicker = new OnTickHandler() {
+		@Override
+		public void tick(int y) {
+			setInstructionTranslationX(y * mInstructionEndX / 1000);
+			setSpinnerTranslationX(y * mSpinnerEndX / 1000);
+		}
+
+		@Override
+		public void done() {
+			setInstructionTranslationX(mInstructionEndX);
+			setSpinnerTranslationX(mSpinnerEndX);
+			mPullToRefresh.setVisibility(View.INVISIBLE);
+			mReleaseToRefresh.setVisibility(View.INVISIBLE);
+			spin();
+		}
+	};
+
+	// One reusable animation channel per header
+	private final AnimateRunnable mAnimation = new AnimateRunnable();
+
 	private void animate(int from, int to, boolean animated, OnTickHandler handler) {
 		if (animated) {
-			post(new AnimateRunnable(this, from, to, handler));
+			mAnimation.start(from, to, handler);
 		}
 		else {
 			handler.done();
@@ -211,62 +269,42 @@ public class HoloPullToRefreshHeaderView extends FrameLayout {
 
 	}
 
+	private final Animation mFadeOut = newFade(1.0f, 0.0f);
+	private final Animation mFadeIn = newFade(0.0f, 1.0f);
+	private Animation mRotate;
+
+	private static Animation newFade(float from, float to) {
+		final Animation fade = new AlphaAnimation(from, to);
+		fade.setDuration(200);
+		return fade;
+	}
+
 	// Make the icon rotate (even if animated == false)
 	private void spin() {
-		final Animation rotate = new RotateAnimation(0, 360, mSpinner.getWidth() / 2,
-				mSpinner.getHeight() / 2);
-		rotate.setRepeatCount(Animation.INFINITE);
-		rotate.setInterpolator(new LinearInterpolator());
-		rotate.setDuration(1000);
-		mSpinner.startAnimation(rotate);
+		final float pivotX = mSpinner.getWidth() / 2;
+		final float pivotY = mSpinner.getHeight() / 2;
+
+		// Only rebuild the rotation if the spinner has changed size
+		if (mRotate == null || pivotX != mRotatePivotX || pivotY != mRotatePivotY) {
+			mRotate = new RotateAnimation(0, 360, pivotX, pivotY);
+			mRotate.setRepeatCount(Animation.INFINITE);
+			mRotate.setInterpolator(LINEAR);
+			mRotate.setDuration(1000);
+			mRotatePivotX = pivotX;
+			mRotatePivotY = pivotY;
+		}
+		mSpinner.startAnimation(mRotate);
 	}
 
+	private static final Interpolator LINEAR = new LinearInterpolator();
+	private float mRotatePivotX;
+	private float mRotatePivotY;
+
 	private void crossfade(View outView, View inView) {
 		inView.setVisibility(View.VISIBLE);
 		outView.setVisibility(View.INVISIBLE);
 
-		final Animation out = new AlphaAnimation(1.0f, 0.0f);
-		out.setDuration(200);
-		final Animation in = new AlphaAnimation(0.0f, 1.0f);
-		in.setDuration(200);
-		inView.startAnimation(in);
-		outView.startAnimation(out);
-	}
-
-	private Typeface getFontFromRes(int resource) {
-		Typeface tf = null;
-		InputStream is = null;
-		try {
-			is = getResources().openRawResource(resource);
-		}
-		catch (NotFoundException e) {
-			Log.e(TAG, "Could not find font in resources!");
-		}
-
-		String outPath = getContext().getCacheDir() + "/tmp.raw";
-
-		try {
-			byte[] buffer = new byte[is.available()];
-			BufferedOutputStream bos = new BufferedOutputStream(new FileOutputStream(outPath));
-
-			int l = 0;
-			while ((l = is.read(buffer)) > 0)
-				bos.write(buffer, 0, l);
-
-			bos.close();
-
-			tf = Typeface.createFromFile(outPath);
-
-			// clean up
-			new File(outPath).delete();
-		}
-		catch (IOException e) {
-			Log.e(TAG, "Error reading in font!");
-			return null;
-		}
-
-		Log.d(TAG, "Successfully loaded font.");
-
-		return tf;
+		inView.startAnimation(mFadeIn);
+		outView.startAnimation(mFadeOut);
 	}
 }
@@ -1,17 +1,28 @@
 package com.dougmelton.holoptr;
 
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.io.PrintWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.MotionEvent;
+import android.view.VelocityTracker;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewTreeObserver;
 import android.view.ViewTreeObserver.OnPreDrawListener;
 import android.widget.FrameLayout;
@@ -47,6 +58,8 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	private View mShadow;
 
 	private AnimatorProxy mAnimProxy;
+	// Only mHeaderHeight + 1 tilts exist, so they're all worked out up front
+	private SkewTable mSkewTable;
 
 	private OnRefreshListener mOnRefreshListener;
 
@@ -62,16 +75,31 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 
 	private void init(Context context, AttributeSet attrs) {
 		mHeaderHeight = context.getResources().getDimensionPixelSize(R.dimen.hptr_header_height);
+		mSkewTable = new SkewTable(mHeaderHeight);
+		mMaximumFlingVelocity = ViewConfiguration.get(context).getScaledMaximumFlingVelocity();
+		mFlingDeceleration = FLING_DECELERATION_DIP * context.getResources().getDisplayMetrics().density;
 
 		TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.HoloPullToRefresh);
 		mRefreshableViewResId = a.getResourceId(R.styleable.HoloPullToRefresh_refreshableView, View.NO_ID);
 		mPeekBackground = a.getDrawable(R.styleable.HoloPullToRefresh_peekBackground);
-
-		mHeader = new HoloPullToRefreshHeaderView(context, attrs);
-		FrameLayout.LayoutParams lpHeader = generateDefaultLayoutParams();
-		lpHeader.height = mHeaderHeight;
-		mHeader.setLayoutParams(lpHeader);
-		addView(mHeader, 0);
+		mLazyHeader = a.getBoolean(R.styleable.HoloPullToRefresh_lazyHeader, false);
+		mUseHardwareLayer = a.getBoolean(R.styleable.HoloPullToRefresh_hardwareLayerDuringPull, false);
+		mTraceEnabled = a.getBoolean(R.styleable.HoloPullToRefresh_traceEnabled, false);
+		mSpeculativeRefresh = a.getBoolean(R.styleable.HoloPullToRefresh_speculativeRefresh, false);
+		mAnimation.setTraceEnabled(mTraceEnabled);
+
+		if (mLazyHeader) {
+			// Hold the header's slot with an empty view until the header is needed
+			mHeaderPlaceholder = new View(context);
+			mHeaderPlaceholder.setVisibility(View.GONE);
+			addView(mHeaderPlaceholder, 0, generateHeaderLayoutParams());
+		}
+		else {
+			mHeader = new HoloPullToRefreshHeaderView(context, attrs);
+			mHeader.setTraceEnabled(mTraceEnabled);
+			mHeader.setLayoutParams(generateHeaderLayoutParams());
+			addView(mHeader, 0);
+		}
 
 		mShadow = new View(context, attrs);
 		mShadow.setBackgroundColor(Color.TRANSPARENT);
@@ -86,11 +114,283 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 				getViewTreeObserver().removeGlobalOnLayoutListener(this);
 				setRefreshableView(mRefreshableViewResId);
 				setState(State.REST, false);
+				if (mLazyHeader) {
+					Looper.myQueue().addIdleHandler(mInflateHeaderWhenIdle);
+				}
 			}
 		};
 		getViewTreeObserver().addOnGlobalLayoutListener(listener);
 	}
 
+	/////////////////////////////////////////////////////////////////////////////
+	// Lazy header
+
+	private boolean mLazyHeader;
+	private View mHeaderPlaceholder;
+
+	private FrameLayout.LayoutParams generateHeaderLayoutParams() {
+		FrameLayout.LayoutParams lpHeader = generateDefaultLayoutParams();
+		lpHeader.height = mHeaderHeight;
+		return lpHeader;
+	}
+
+	/**
+	 * Builds the real header in place of the placeholder, if that hasn't happened yet.
+	 */
+	private void ensureHeader() {
+		if (mHeader != null) {
+			return;
+		}
+		mHeader = new HoloPullToRefreshHeaderView(getContext());
+		mHeader.setTraceEnabled(mTraceEnabled);
+		mHeader.setLayoutParams(generateHeaderLayoutParams());
+		removeView(mHeaderPlaceholder);
+		mHeaderPlaceholder = null;
+		addView(mHeader, 0);
+	}
+
+	// Once the first frame is up, build the header whenever the UI thread is idle
+	private final MessageQueue.IdleHandler mInflateHeaderWhenIdle = new MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			ensureHeader();
+			return false;
+		}
+	};
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Hardware layer
+
+	private boolean mUseHardwareLayer;
+	private boolean mHasHardwareLayer;
+	private boolean mHardwareLayerSuppressed;
+
+	/**
+	 * Render the refreshable view into a hardware layer while it's being pulled or
+	 * animated, so that each tilt/scale frame is a cheap layer composite instead
+	 * of a full redraw of its content. The layer is dropped when the state returns
+	 * to rest, and for the rest of the gesture if the view's content changes.
+	 * Views that draw the pull glow themselves, such as RefreshableListView,
+	 * redraw on every tick anyway and never get a layer.
+	 */
+	public void setUseHardwareLayerDuringPull(boolean use) {
+		mUseHardwareLayer = use;
+		updateHardwareLayer();
+	}
+
+	private void updateHardwareLayer() {
+		if (mState == State.REST && mAnimation.isStopped()) {
+			// Give the next gesture a fresh chance at a layer
+			mHardwareLayerSuppressed = false;
+		}
+
+		final boolean moving = mState == State.PULL_TO_REFRESH
+				|| mState == State.RELEASE_TO_REFRESH
+				|| !mAnimation.isStopped();
+
+		if (mUseHardwareLayer && moving && !mHardwareLayerSuppressed) {
+			startHardwareLayer();
+		}
+		else {
+			stopHardwareLayer();
+		}
+	}
+
+	private void startHardwareLayer() {
+		if (mHasHardwareLayer || AnimatorProxy.NEEDS_PROXY || mRefreshableView == null) {
+			return;
+		}
+
+		// A view drawing the pull glow itself redraws on every tick, so its layer would be
+		// re-rendered every frame and then composited on top: strictly more work
+		if (mRefreshableView instanceof GlowListener) {
+			return;
+		}
+
+		// A software layer would cost more than it saves, and leave app-managed layers alone
+		if (!mRefreshableView.isHardwareAccelerated() || mRefreshableView.getLayerType() != View.LAYER_TYPE_NONE) {
+			return;
+		}
+
+		if (mDropLayerOnLayoutChange == null) {
+			createHardwareLayerListeners();
+		}
+
+		mRefreshableView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+		mRefreshableView.addOnLayoutChangeListener(mDropLayerOnLayoutChange);
+		getViewTreeObserver().addOnScrollChangedListener(mDropLayerOnScroll);
+		mHasHardwareLayer = true;
+	}
+
+	private void stopHardwareLayer() {
+		if (!mHasHardwareLayer) {
+			return;
+		}
+
+		mRefreshableView.setLayerType(View.LAYER_TYPE_NONE, null);
+		mRefreshableView.removeOnLayoutChangeListener(mDropLayerOnLayoutChange);
+		getViewTreeObserver().removeOnScrollChangedListener(mDropLayerOnScroll);
+		mHasHardwareLayer = false;
+	}
+
+	// If the content is changing under the layer, it would be re-rendered every frame anyway
+	private void suppressHardwareLayer() {
+		mHardwareLayerSuppressed = true;
+		stopHardwareLayer();
+	}
+
+	// Built on first use, as View.OnLayoutChangeListener doesn't exist before Honeycomb
+	private View.OnLayoutChangeListener mDropLayerOnLayoutChange;
+	private ViewTreeObserver.OnScrollChangedListener mDropLayerOnScroll;
+
+	private void createHardwareLayerListeners() {
+		mDropLayerOnLayoutChange = new View.OnLayoutChangeListener() {
+			@Override
+			public void onLayoutChange(View v, int left, int top, int right, int bottom,
+					int oldLeft, int oldTop, int oldRight, int oldBottom) {
+				suppressHardwareLayer();
+			}
+		};
+
+		mDropLayerOnScroll = new ViewTreeObserver.OnScrollChangedListener() {
+			@Override
+			public void onScrollChanged() {
+				// Only a scroll mid-gesture means the content moved under us
+				if (mState == State.PULL_TO_REFRESH || mState == State.RELEASE_TO_REFRESH) {
+					suppressHardwareLayer();
+				}
+			}
+		};
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Metrics
+
+	private PullMetrics mMetrics;
+	private OnPullMetricsListener mOnPullMetricsListener;
+
+	private boolean mGestureInProgress = false;
+	private long mReleaseTime = -1;
+	private long mCompleteTime = -1;
+
+	/**
+	 * Listener for performance metrics. Called on the UI thread each time the
+	 * layout settles back at rest after a gesture or refresh.
+	 */
+	public static interface OnPullMetricsListener {
+		/**
+		 * @param metrics The layout's metrics so far. The same instance is passed every
+		 *            time; call {@link PullMetrics#reset()} for per-gesture numbers.
+		 */
+		public void onPullMetrics(HoloPullToRefreshLayout refreshView, PullMetrics metrics);
+	}
+
+	/**
+	 * Start collecting metrics and reporting them to the given listener, or pass
+	 * null to stop collecting. Collection is off by default.
+	 */
+	public final void setOnPullMetricsListener(OnPullMetricsListener listener) {
+		mOnPullMetricsListener = listener;
+		if (listener != null && mMetrics == null) {
+			mMetrics = new PullMetrics();
+		}
+		else if (listener == null) {
+			mMetrics = null;
+		}
+		mAnimation.setMetrics(mMetrics);
+		mReleaseTime = -1;
+		mCompleteTime = -1;
+	}
+
+	private void onRestSettled() {
+		if (!mGestureInProgress) {
+			return;
+		}
+		mGestureInProgress = false;
+
+		if (mMetrics != null) {
+			if (mCompleteTime != -1) {
+				mMetrics.recordCompleteToRest(FrameClock.getInstance().nanoTime() - mCompleteTime);
+				mCompleteTime = -1;
+			}
+			mMetrics.recordGesture();
+			mOnPullMetricsListener.onPullMetrics(this, mMetrics);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Tracing
+
+	private boolean mTraceEnabled;
+
+	/**
+	 * Emit systrace sections around this layout's hot paths: pull events, view
+	 * offsets, state changes, animation ticks, the header's layout and (for a
+	 * RefreshableListView) the list's draw. Also settable with the traceEnabled
+	 * attribute. Requires Android 4.3; a no-op before that.
+	 */
+	public void setTraceEnabled(boolean enabled) {
+		mTraceEnabled = enabled;
+		mAnimation.setTraceEnabled(enabled);
+		if (mHeader != null) {
+			mHeader.setTraceEnabled(enabled);
+		}
+		if (mRefreshableView instanceof RefreshableListView) {
+			((RefreshableListView) mRefreshableView).setTraceEnabled(enabled);
+		}
+	}
+
+	/**
+	 * Turn systrace sections on for every layout in the process, and for the
+	 * header font load, regardless of their own setting.
+	 */
+	public static void setTraceEnabledGlobally(boolean enabled) {
+		Tracer.sEnabled = enabled;
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Transition log
+
+	private final TransitionLog mTransitionLog = new TransitionLog(getStateNames());
+	// Captured on the UI thread, so a dump from another thread never has to create it
+	private final FrameClock mTransitionClock = FrameClock.getInstance();
+
+	private static String[] getStateNames() {
+		final State[] states = State.values();
+		final String[] names = new String[states.length];
+		for (int i = 0; i < states.length; i++) {
+			names[i] = states[i].name();
+		}
+		return names;
+	}
+
+	private void recordTransition(State to, boolean animated, boolean retargeted) {
+		// e.g. REST -> REST on every tap that never became a pull; don't let those push real history out
+		if (to == mState && !retargeted) {
+			return;
+		}
+		final int flags = (animated ? TransitionLog.FLAG_ANIMATED : 0)
+				| (retargeted ? TransitionLog.FLAG_RETARGETED : 0);
+		mTransitionLog.record(mState == null ? -1 : mState.ordinal(), to.ordinal(), flags,
+				mTransitionClock.nanoTime(), mPullDistance);
+	}
+
+	/**
+	 * Print the most recent state transitions of this layout, e.g. into a bug
+	 * report when it appears stuck refreshing. The log is always on and
+	 * records without allocating. May be called from any thread, though the
+	 * current state and pull printed above the log are only exact when called
+	 * from the UI thread.
+	 */
+	public void dumpTransitionLog(PrintWriter writer) {
+		writer.print(TAG);
+		writer.print(" state=");
+		writer.print(mState);
+		writer.print(" pull=");
+		writer.println(mPullDistance);
+		mTransitionLog.dump(writer, "  ", mTransitionClock.nanoTime());
+	}
+
 	/////////////////////////////////////////////////////////////////////////////
 	// Properties
 
@@ -109,7 +409,11 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	}
 
 	public void setRefreshableView(View refreshableView) {
+		stopHardwareLayer();
 		mRefreshableView = refreshableView;
+		if (mRefreshableView instanceof RefreshableListView) {
+			((RefreshableListView) mRefreshableView).setTraceEnabled(mTraceEnabled);
+		}
 		if (AnimatorProxy.NEEDS_PROXY) {
 			mAnimProxy = AnimatorProxy.wrap(mRefreshableView);
 		}
@@ -122,6 +426,39 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	/////////////////////////////////////////////////////////////////////////////
 	// Touch Events
 
+	// How quickly a released pull is assumed to slow down, when predicting where it would land
+	private static final float FLING_DECELERATION_DIP = 2500f;
+
+	private VelocityTracker mVelocityTracker;
+	private int mMaximumFlingVelocity;
+	private float mFlingDeceleration;
+
+	// The pull distance's velocity at release, in pixels per second, for the next animation
+	private float mPullVelocity = 0f;
+
+	@Override
+	public boolean dispatchTouchEvent(MotionEvent event) {
+		// Every event passes through here once, whoever ends up handling it
+		if (event.getAction() == MotionEvent.ACTION_DOWN) {
+			if (mVelocityTracker == null) {
+				mVelocityTracker = VelocityTracker.obtain();
+			}
+			mVelocityTracker.clear();
+		}
+		if (mVelocityTracker != null) {
+			mVelocityTracker.addMovement(event);
+		}
+		return super.dispatchTouchEvent(event);
+	}
+
+	private float getFingerVelocity() {
+		if (mVelocityTracker == null) {
+			return 0f;
+		}
+		mVelocityTracker.computeCurrentVelocity(1000, mMaximumFlingVelocity);
+		return mVelocityTracker.getYVelocity();
+	}
+
 	@Override
 	public final boolean onInterceptTouchEvent(MotionEvent event) {
 		final int action = event.getAction();
@@ -133,6 +470,14 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 				return !mTouchDuringRefresh;
 			}
 
+			// Caught on its way back to rest from a pull; pick it up from where it is. On the way
+			// back from a refresh only the top is moving, so a new pull starts over instead
+			if (mState == State.REST && !mAnimation.isStopped()
+					&& mAnimation.getTickHandler() == mRestTicker && isReadyForPull()) {
+				regrab(event.getY());
+				return true;
+			}
+
 			if (isReadyForPull()) {
 				mLastMotionY = mInitialMotionY = event.getY();
 				mPullDistance = 0;
@@ -177,11 +522,18 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 
 	// This calculates a springiness to the pull
 	private float augmentedPullDistance(float pixels) {
-		//		float augmented1 = pixels / FRICTION;
-		//		float augmented2 = (pixels * 650f) / (pixels + 1500f);
-		float augmented2 = (pixels * 400f) / (pixels + 1000f);
-		//		Log.e(TAG, pixels + " => " + augmented1 + " vs " + augmented2);
-		return augmented2;
+		return PullMath.augmentedPullDistance(pixels);
+	}
+
+	private void regrab(float y) {
+		final int current = mAnimation.getCurrent();
+		setState(State.PULL_TO_REFRESH, true);
+
+		// Place the initial touch so that this finger position maps to the current pull
+		mPullDistance = current;
+		mLastMotionY = y;
+		mInitialMotionY = y - PullMath.inversePullDistance(current);
+		pullEvent();
 	}
 
 	@Override
@@ -197,6 +549,10 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 			if (event.getEdgeFlags() != 0) {
 				return false;
 			}
+			// Already re-grabbed in onInterceptTouchEvent
+			if (mState == State.PULL_TO_REFRESH || mState == State.RELEASE_TO_REFRESH) {
+				return true;
+			}
 			if (isReadyForPull()) {
 				mLastMotionY = mInitialMotionY = event.getY();
 				mPullDistance = 0;
@@ -215,9 +571,26 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 			break;
 		}
 
-		case MotionEvent.ACTION_CANCEL:
+		case MotionEvent.ACTION_CANCEL: {
+			// The gesture was taken away (e.g. by a parent), not released: never refresh,
+			// and throw away any work started ahead of a release
+			if (mState != State.REST) {
+				cancelSpeculativeRefresh();
+				mPullVelocity = 0;
+				setState(State.REST, true);
+			}
+			return true;
+		}
+
 		case MotionEvent.ACTION_UP: {
-			if (mState == State.RELEASE_TO_REFRESH) {
+			mPullVelocity = PullMath.pullVelocity(mLastMotionY - mInitialMotionY, getFingerVelocity());
+
+			// Refresh if the pull would have carried on past the header, even if it isn't there yet
+			final float landing = PullMath.projectedPullDistance(mPullDistance, mPullVelocity, mFlingDeceleration);
+			if (mState != State.REST && landing > mHeaderHeight && !isRefreshSuppressed()) {
+				if (mMetrics != null) {
+					mReleaseTime = FrameClock.getInstance().nanoTime();
+				}
 				setState(State.REFRESH, true);
 			}
 			else {
@@ -234,7 +607,10 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	// Move the views around holo-like
 
 	private void pullEvent() {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.PULL_EVENT);
+
 		offset(mPullDistance, mPullDistance, mPullDistance);
+		schedulePullProgress();
 
 		if (mPullDistance == 0) {
 			setState(State.REST, true);
@@ -247,13 +623,27 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 		else if (mState == State.RELEASE_TO_REFRESH && mHeaderHeight >= mPullDistance) {
 			setState(State.PULL_TO_REFRESH, true);
 		}
+
+		Tracer.end(traced);
 	}
 
 	protected final void offset(int top, int glow, int rotation) {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.OFFSET);
+
+		// On the proxy path, move and tilt the view with one rect calculation and one invalidate
+		final AnimatorProxy proxy = AnimatorProxy.NEEDS_PROXY ? mAnimProxy : null;
+		if (proxy != null) {
+			proxy.beginUpdate();
+		}
 		offsetGlow(glow);
 		offsetTop(top);
 		offsetSkew(rotation);
 		offsetShadow(top, rotation);
+		if (proxy != null) {
+			proxy.commitUpdate();
+		}
+
+		Tracer.end(traced);
 	}
 
 	protected final void offsetShadow(int top, int rotation) {
@@ -286,20 +676,15 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 
 	protected void offsetSkew(int y) {
 		mOffsetRotation = Math.min(mHeaderHeight, y);
-		float degrees = Math.min(32f, mOffsetRotation / 24f);
-		float scale = 1f + degrees / 128f;
-		//float scale = 1f - degrees / 1024f;
+		float degrees = mSkewTable.getDegrees(mOffsetRotation);
+		float scale = mSkewTable.getScale(mOffsetRotation);
 
 		if (AnimatorProxy.NEEDS_PROXY) {
 			if (mAnimProxy == null) {
 				Log.e(TAG, "mAnimProxy is null");
 				return;
 			}
-			mAnimProxy.setPivotY(0);
-			mAnimProxy.setPivotX(getWidth() / 2);
-			mAnimProxy.setRotationX(-degrees);
-			mAnimProxy.setScaleX(scale);
-			mAnimProxy.setScaleY(scale);
+			mAnimProxy.setSkew(mSkewTable, mOffsetRotation, getWidth() / 2);
 		}
 		else {
 			mRefreshableView.setPivotY(0);
@@ -313,58 +698,83 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	/////////////////////////////////////////////////////////////////////////////
 	// State machine
 
-	private Queue<StateTransition> mStateQueue = null;
-
-	private static class StateTransition {
-		public State state;
-		public boolean animated;
-
-		public StateTransition(State state, boolean animated) {
-			this.state = state;
-			this.animated = animated;
-		}
+	private void setState(State state, boolean animated) {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.SET_STATE);
+		applyState(state, animated);
+		Tracer.end(traced);
 	}
 
-	private void dequeueState() {
-		if (mStateQueue == null || mStateQueue.isEmpty()) {
-			return;
-		}
-		post(new Runnable() {
-			@Override
-			public void run() {
-				StateTransition transition = mStateQueue.poll();
-				setState(transition.state, transition.animated);
+	private void applyState(State state, boolean animated) {
+		boolean retargeted = false;
+		if (!mAnimation.isStopped()) {
+			// Already animating to this state, so let it carry on
+			if (state == mState && animated) {
+				return;
 			}
-		});
-	}
-
-	private void setState(State state, boolean animated) {
-		// If an animation is already going, queue up the next one
-		if (mAnimation != null && !mAnimation.isStopped()) {
-			if (mStateQueue == null) {
-				mStateQueue = new ConcurrentLinkedQueue<StateTransition>();
+			interruptAnimation();
+			retargeted = true;
+			if (mMetrics != null) {
+				mMetrics.recordRetargetedTransition();
 			}
-			mStateQueue.add(new StateTransition(state, animated));
-			return;
 		}
 
+		if (state != State.REST) {
+			ensureHeader();
+			mGestureInProgress = true;
+		}
+
+		recordTransition(state, animated, retargeted);
+
 		State fromState = mState;
 		mState = state;
 
 		switch (state) {
 		case REST:
+			cancelSpeculativeRefresh();
 			onRest(fromState, animated);
 			break;
 		case PULL_TO_REFRESH:
+			cancelSpeculativeRefresh();
 			onPullToRefresh(fromState);
 			break;
 		case RELEASE_TO_REFRESH:
 			onReleaseToRefresh();
+			startSpeculativeRefresh();
 			break;
 		case REFRESH:
 			onRefresh(fromState, animated);
 			break;
 		}
+
+		onPullStateChanged(fromState, state);
+		updateHardwareLayer();
+	}
+
+	/**
+	 * Stop the running animation so that a new state can take over on the next
+	 * frame, rather than after the animation would have finished.
+	 */
+	private void interruptAnimation() {
+		final OnTickHandler handler = mAnimation.getTickHandler();
+		final int current = mAnimation.getCurrent();
+		final float velocity = mAnimation.getVelocity();
+		mAnimation.cancel();
+
+		if (handler == mRefreshTicker) {
+			// Only the glow and tilt are left to settle; do it now so refreshing is set up
+			handler.done();
+			return;
+		}
+
+		// Heading back to rest: the header won't get there, so put it back as done() would
+		if (mHeader != null) {
+			mHeader.rest();
+		}
+		if (handler == mRestTicker) {
+			// Carry on from wherever, and however fast, the pull has got to
+			mPullDistance = current;
+			mPullVelocity = velocity;
+		}
 	}
 
 	/**
@@ -375,7 +785,11 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 			//TODO: we didn't used to set offsetTop(0) here... for some reason
 			offset(0, 0, 0);
 			setRefreshingTop(false);
-			mHeader.rest();
+			showPeekBackground(false);
+			if (mHeader != null) {
+				mHeader.rest();
+			}
+			onRestSettled();
 			return;
 		}
 
@@ -386,36 +800,42 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 			offset(starty, 0, 0);
 			setRefreshingTop(false);
 
-			animate(starty, 0, isAnimated, new OnTickHandler() {
-				@Override
-				public void tick(int y) {
-					offset(y, 0, 0);
-				}
-
-				@Override
-				public void done() {
-					mHeader.rest();
-					dequeueState();
-				}
-			});
+			animate(starty, 0, 0f, isAnimated, mRestFromRefreshTicker);
 		}
 		else {
-			animate(mPullDistance, 0, isAnimated, new OnTickHandler() {
-				@Override
-				public void tick(int y) {
-					offset(y, y, y);
-				}
-
-				@Override
-				public void done() {
-					mHeader.rest();
-					dequeueState();
-					showPeekBackground(false);
-				}
-			});
+			animate(mPullDistance, 0, mPullVelocity, isAnimated, mRestTicker);
 		}
 	}
 
+	private final OnTickHandler mRestFromRefreshTicker = new OnTickHandler() {
+		@Override
+		public void tick(int y) {
+			offset(y, 0, 0);
+		}
+
+		@Override
+		public void done() {
+			mHeader.rest();
+			updateHardwareLayer();
+			onRestSettled();
+		}
+	};
+
+	private final OnTickHandler mRestTicker = new OnTickHandler() {
+		@Override
+		public void tick(int y) {
+			offset(y, y, y);
+		}
+
+		@Override
+		public void done() {
+			mHeader.rest();
+			updateHardwareLayer();
+			onRestSettled();
+			showPeekBackground(false);
+		}
+	};
+
 	/**
 	 * Called when the UI needs to be updated to the 'Pull to Refresh' state
 	 */
@@ -444,38 +864,81 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 	 * Called when the UI needs to be updated to the 'Refreshing' state
 	 */
 	protected void onRefresh(State fromState, boolean animated) {
-		if (null == mOnRefreshListener) {
+		if (mOnAsyncRefreshListener != null) {
+			if (mRefreshTaskSpeculative) {
+				promoteSpeculativeRefresh();
+			}
+			else {
+				startRefreshTask(mOnAsyncRefreshListener);
+			}
+		}
+		else if (mOnRefreshListener != null) {
+			mAwaitingRefreshComplete = true;
+			mOnRefreshListener.onRefresh(this);
+		}
+		else {
+			mReleaseTime = -1;
 			onRefreshComplete(animated);
 			return;
 		}
-		mOnRefreshListener.onRefresh(this);
 
 		mHeader.refresh(animated);
 
-		// Remove the glow and the tilt
-		animate(mPullDistance, 0, animated, new OnTickHandler() {
-			@Override
-			public void tick(int y) {
-				offset(mPullDistance, y, y);
-			}
+		// Remove the glow and the tilt, and finish revealing the header
+		mRefreshTop = Math.min(mPullDistance, mHeaderHeight);
+		animate(mPullDistance, 0, mPullVelocity, animated, mRefreshTicker);
+	}
 
-			@Override
-			public void done() {
-				if (mRefreshableView instanceof Refreshable) {
-					offset(0, 0, 0);
-				}
-				setRefreshingTop(true);
-				dequeueState();
+	// Where the top has got to while refreshing; a flick can refresh before the header is all the
+	// way out, so the top carries on out to it as the glow and tilt settle, and never goes back
+	private int mRefreshTop;
+
+	private final OnTickHandler mRefreshTicker = new OnTickHandler() {
+		@Override
+		public void tick(int y) {
+			recordReleaseToRefresh();
+			final int top;
+			if (y > mPullDistance) {
+				// Still being carried along by the release
+				top = y;
+			}
+			else {
+				top = mHeaderHeight - (mHeaderHeight - mPullDistance) * Math.max(0, y) / Math.max(1, mPullDistance);
 			}
-		});
+			mRefreshTop = Math.max(mRefreshTop, Math.min(top, mHeaderHeight));
+			offset(mRefreshTop, y, y);
+		}
+
+		@Override
+		public void done() {
+			recordReleaseToRefresh();
+			// A Refreshable shows its own header row instead
+			offset(mRefreshableView instanceof Refreshable ? 0 : mHeaderHeight, 0, 0);
+			setRefreshingTop(true);
+			updateHardwareLayer();
+		}
+	};
+
+	// Measured to the first frame that shows the refresh, not to the synchronous onRefresh() call
+	private void recordReleaseToRefresh() {
+		if (mMetrics != null && mReleaseTime != -1) {
+			mMetrics.recordReleaseToRefresh(FrameClock.getInstance().nanoTime() - mReleaseTime);
+			mReleaseTime = -1;
+		}
 	}
 
-	AnimateRunnable mAnimation;
+	// One reusable animation channel per layout
+	private final AnimateRunnable mAnimation = new AnimateRunnable();
 
-	private void animate(int from, int to, boolean animated, OnTickHandler handler) {
+	/**
+	 * Spring from one offset to another, so that the animation picks up the
+	 * release velocity and takes only as long as it needs to.
+	 */
+	private void animate(int from, int to, float velocity, boolean animated, OnTickHandler handler) {
+		mPullVelocity = 0f;
 		if (animated) {
-			mAnimation = new AnimateRunnable(this, from, to, handler);
-			post(mAnimation);
+			// Nothing rests above the top, however hard the pull is thrown back up
+			mAnimation.startSpring(from, to, velocity, to != 0, handler);
 		}
 		else {
 			handler.done();
@@ -528,18 +991,416 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 		mOnRefreshListener = listener;
 	}
 
+	/////////////////////////////////////////////////////////////////////////////
+	// Freshness
+
 	/**
-	 * Mark the current Refresh as complete. Will Reset the UI and hide the
-	 * Refreshing View
+	 * Decides whether the data behind the refreshable view is worth refreshing
+	 */
+	public static interface FreshnessCheck {
+
+		/**
+		 * Called on the UI thread when a pull is about to refresh.
+		 * 
+		 * @return false to skip the refresh and just return to rest
+		 */
+		public boolean isDataStale(HoloPullToRefreshLayout refreshView);
+	}
+
+	private long mMinRefreshIntervalMs = 0;
+	private FreshnessCheck mFreshnessCheck;
+
+	private long mLastRefreshTime = -1;
+	// Whether an OnRefreshListener has been called and not yet completed
+	private boolean mAwaitingRefreshComplete = false;
+	private int mSuppressedRefreshes = 0;
+
+	/**
+	 * Skip refreshes that come within the given time of the last successful one;
+	 * the pull just returns to rest. 0, the default, never skips.
+	 */
+	public final void setMinRefreshInterval(long millis) {
+		mMinRefreshIntervalMs = millis;
+	}
+
+	/**
+	 * Skip refreshes while the given check says the data isn't stale; the pull
+	 * just returns to rest. Applies along with {@link #setMinRefreshInterval(long)}.
+	 */
+	public final void setFreshnessCheck(FreshnessCheck check) {
+		mFreshnessCheck = check;
+	}
+
+	/**
+	 * How many pulls have returned to rest without refreshing, because the data
+	 * was fresh enough
+	 */
+	public final int getSuppressedRefreshCount() {
+		return mSuppressedRefreshes;
+	}
+
+	/**
+	 * Whether a release that would refresh should just go back to rest instead,
+	 * counting it if so. Without a listener there is nothing to skip.
+	 */
+	private boolean isRefreshSuppressed() {
+		if (mOnAsyncRefreshListener == null && mOnRefreshListener == null) {
+			return false;
+		}
+		// A speculative refresh already passed the gate
+		if (mRefreshTaskSpeculative || !isDataFresh()) {
+			return false;
+		}
+		mSuppressedRefreshes++;
+		if (mMetrics != null) {
+			mMetrics.recordSuppressedRefresh();
+		}
+		return true;
+	}
+
+	private boolean isDataFresh() {
+		if (mLastRefreshTime != -1
+				&& SystemClock.elapsedRealtime() - mLastRefreshTime < mMinRefreshIntervalMs) {
+			return true;
+		}
+		return mFreshnessCheck != null && !mFreshnessCheck.isDataStale(this);
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// OnPullProgressListener interface
+
+	/**
+	 * Listener for the progress of a pull, e.g. to warm up connections or caches
+	 * while the user is still pulling. All calls are on the UI thread.
+	 */
+	public static interface OnPullProgressListener {
+
+		/**
+		 * The user has started pulling from rest
+		 */
+		public void onPullStarted(HoloPullToRefreshLayout refreshView);
+
+		/**
+		 * The pull has moved. Called at most once per frame, with the latest position.
+		 * 
+		 * @param fraction - The pull distance as a fraction of the header height; past
+		 *            1 means releasing will refresh
+		 */
+		public void onPullProgress(HoloPullToRefreshLayout refreshView, float fraction);
+
+		/**
+		 * The pull went back to rest without refreshing
+		 */
+		public void onPullAbandoned(HoloPullToRefreshLayout refreshView);
+	}
+
+	private OnPullProgressListener mOnPullProgressListener;
+	private int mReportedPullDistance = -1;
+
+	public final void setOnPullProgressListener(OnPullProgressListener listener) {
+		mOnPullProgressListener = listener;
+		if (listener == null) {
+			FrameClock.getInstance().remove(mPullProgressFrame);
+		}
+	}
+
+	private void onPullStateChanged(State fromState, State toState) {
+		if (mOnPullProgressListener == null) {
+			return;
+		}
+
+		final boolean wasPulling = fromState == State.PULL_TO_REFRESH || fromState == State.RELEASE_TO_REFRESH;
+		final boolean isPulling = toState == State.PULL_TO_REFRESH || toState == State.RELEASE_TO_REFRESH;
+		if (isPulling && !wasPulling) {
+			mReportedPullDistance = -1;
+			mOnPullProgressListener.onPullStarted(this);
+			schedulePullProgress();
+		}
+		else if (wasPulling && !isPulling) {
+			FrameClock.getInstance().remove(mPullProgressFrame);
+			if (toState == State.REST) {
+				mOnPullProgressListener.onPullAbandoned(this);
+			}
+		}
+	}
+
+	private void schedulePullProgress() {
+		if (mOnPullProgressListener != null && mPullDistance != mReportedPullDistance) {
+			FrameClock.getInstance().add(mPullProgressFrame);
+		}
+	}
+
+	// Runs for a single frame after the pull moves, so many moves in a frame make one report
+	private final FrameClock.FrameListener mPullProgressFrame = new FrameClock.FrameListener() {
+		@Override
+		public void doFrame(long frameTimeNanos) {
+			FrameClock.getInstance().remove(this);
+			if (mOnPullProgressListener == null || mPullDistance == mReportedPullDistance) {
+				return;
+			}
+			mReportedPullDistance = mPullDistance;
+			mOnPullProgressListener.onPullProgress(HoloPullToRefreshLayout.this,
+					(float) mPullDistance / mHeaderHeight);
+		}
+	};
+
+	/////////////////////////////////////////////////////////////////////////////
+	// OnAsyncRefreshListener interface
+
+	/**
+	 * A refresh whose work runs off the UI thread. The layout runs it on the given
+	 * Executor, and returns to rest on its own once the work is done, so there's
+	 * no need to call {@link HoloPullToRefreshLayout#onRefreshComplete(boolean)}.
+	 */
+	public static interface OnAsyncRefreshListener<T> {
+
+		/**
+		 * Do the refresh work. Called on the Executor's thread; may be interrupted
+		 * if the refresh is cancelled.
+		 */
+		public T onRefreshInBackground(HoloPullToRefreshLayout refreshView) throws Exception;
+
+		/**
+		 * Called on the UI thread when the work has finished, just before the layout
+		 * returns to rest. Not called if the refresh was cancelled.
+		 * 
+		 * @param result - What onRefreshInBackground returned, or null if it threw
+		 * @param error - What onRefreshInBackground threw, or null if it succeeded
+		 */
+		public void onRefreshFinished(HoloPullToRefreshLayout refreshView, T result, Exception error);
+	}
+
+	private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+	private Executor mRefreshExecutor;
+	private OnAsyncRefreshListener<?> mOnAsyncRefreshListener;
+	private RefreshTask<?> mRefreshTask;
+
+	private boolean mSpeculativeRefresh;
+	// Whether mRefreshTask was started ahead of the release and not yet promoted
+	private boolean mRefreshTaskSpeculative;
+
+	/**
+	 * Set an asynchronous refresh for the Widget. Takes precedence over any
+	 * {@link OnRefreshListener}.
+	 * 
+	 * @param executor - Where to run the refresh work
+	 * @param listener - The refresh, or null to remove it
 	 */
-	public final void onRefreshComplete(final boolean animated) {
-		runOnNextPreDraw(new Runnable() {
+	public final <T> void setOnAsyncRefreshListener(Executor executor, OnAsyncRefreshListener<T> listener) {
+		if (listener != null && executor == null) {
+			throw new IllegalArgumentException("An Executor is required to run an async refresh");
+		}
+		mRefreshExecutor = executor;
+		mOnAsyncRefreshListener = listener;
+	}
+
+	/**
+	 * The refresh work currently in flight, or null if there is none. Cancelling
+	 * it returns the layout to rest.
+	 */
+	public final Future<?> getRefreshFuture() {
+		return mRefreshTask;
+	}
+
+	/**
+	 * Cancel any in-flight async refresh and return the layout to rest.
+	 */
+	public final void cancelRefresh() {
+		if (mRefreshTaskSpeculative) {
+			// Nothing is showing yet; a release will start over
+			cancelSpeculativeRefresh();
+		}
+		else if (mRefreshTask != null) {
+			mRefreshTask.cancel(true);
+		}
+	}
+
+	/**
+	 * Start the async refresh as soon as the pull reaches 'Release to Refresh',
+	 * rather than when the finger lifts, so the work overlaps the rest of the
+	 * gesture. If the user pulls back or cancels, the work is cancelled; if they
+	 * release, it becomes the refresh. Also settable with the speculativeRefresh
+	 * attribute. Only applies to an {@link OnAsyncRefreshListener}, so the work
+	 * should be safe to throw away.
+	 */
+	public final void setSpeculativeRefresh(boolean speculative) {
+		mSpeculativeRefresh = speculative;
+		if (!speculative) {
+			cancelSpeculativeRefresh();
+		}
+	}
+
+	private void startSpeculativeRefresh() {
+		if (!mSpeculativeRefresh || mOnAsyncRefreshListener == null || mRefreshTask != null
+				|| isDataFresh()) {
+			return;
+		}
+		startRefreshTask(mOnAsyncRefreshListener);
+		mRefreshTaskSpeculative = true;
+	}
+
+	private void cancelSpeculativeRefresh() {
+		if (!mRefreshTaskSpeculative) {
+			return;
+		}
+		mRefreshTaskSpeculative = false;
+
+		// Forget it first, so its finish is ignored rather than completing a refresh
+		final RefreshTask<?> task = mRefreshTask;
+		mRefreshTask = null;
+		task.cancel(true);
+	}
+
+	private void promoteSpeculativeRefresh() {
+		mRefreshTaskSpeculative = false;
+
+		// If the work beat the finger, its finish was held back; deliver it now
+		if (mRefreshTask.isDone()) {
+			mMainHandler.post(mRefreshTask.mFinish);
+		}
+	}
+
+	private <T> void startRefreshTask(OnAsyncRefreshListener<T> listener) {
+		// Never run two refreshes at once
+		if (mRefreshTask != null) {
+			mRefreshTask.cancel(true);
+		}
+		final RefreshTask<T> task = new RefreshTask<T>(listener);
+		mRefreshTask = task;
+		mRefreshExecutor.execute(task);
+	}
+
+	@Override
+	protected void onDetachedFromWindow() {
+		// Don't leak the work (or this layout, through it) past the window
+		cancelRefresh();
+		if (mVelocityTracker != null) {
+			mVelocityTracker.recycle();
+			mVelocityTracker = null;
+		}
+		super.onDetachedFromWindow();
+	}
+
+	private final class RefreshTask<T> extends FutureTask<T> {
+		private final OnAsyncRefreshListener<T> mListener;
+
+		public RefreshTask(final OnAsyncRefreshListener<T> listener) {
+			super(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return listener.onRefreshInBackground(HoloPullToRefreshLayout.this);
+				}
+			});
+			mListener = listener;
+		}
+
+		// Called on whichever thread finished or cancelled the work
+		@Override
+		protected void done() {
+			mMainHandler.post(mFinish);
+		}
+
+		private final Runnable mFinish = new Runnable() {
+			@Override
 			public void run() {
-				setState(State.REST, animated);
+				finish();
+			}
+		};
+
+		private void finish() {
+			// A newer refresh has replaced this one
+			if (mRefreshTask != this) {
+				return;
 			}
-		});
+			// Still waiting on the release; promoteSpeculativeRefresh() will post us again
+			if (mRefreshTaskSpeculative) {
+				return;
+			}
+			mRefreshTask = null;
+
+			if (isCancelled()) {
+				onRefreshComplete(false);
+				return;
+			}
+
+			T result = null;
+			Exception error = null;
+			try {
+				result = get();
+			}
+			catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				error = cause instanceof Exception ? (Exception) cause : e;
+			}
+			catch (InterruptedException e) {
+				// Can't happen, the work is done
+				error = e;
+			}
+
+			if (error == null) {
+				mLastRefreshTime = SystemClock.elapsedRealtime();
+			}
+			mListener.onRefreshFinished(HoloPullToRefreshLayout.this, result, error);
+			onRefreshComplete(true);
+		}
 	}
 
+	/**
+	 * Mark the current Refresh as complete. Will Reset the UI and hide the
+	 * Refreshing View. May be called from any thread; calls made before the UI
+	 * thread gets around to completing are merged, and the last one's animated
+	 * flag wins.
+	 */
+	public final void onRefreshComplete(boolean animated) {
+		mRefreshCompleteAnimated = animated;
+		if (Looper.myLooper() == Looper.getMainLooper()) {
+			scheduleRefreshComplete();
+		}
+		else if (mRefreshCompletePosted.compareAndSet(false, true)) {
+			mMainHandler.post(mRefreshCompleteRunnable);
+		}
+	}
+
+	private volatile boolean mRefreshCompleteAnimated;
+	private final AtomicBoolean mRefreshCompletePosted = new AtomicBoolean(false);
+
+	private final Runnable mRefreshCompleteRunnable = new Runnable() {
+		@Override
+		public void run() {
+			mRefreshCompletePosted.set(false);
+			scheduleRefreshComplete();
+		}
+	};
+
+	private void scheduleRefreshComplete() {
+		// An OnRefreshListener can't say whether it succeeded, so completing counts
+		if (mAwaitingRefreshComplete) {
+			mAwaitingRefreshComplete = false;
+			mLastRefreshTime = SystemClock.elapsedRealtime();
+		}
+		if (mMetrics != null && mCompleteTime == -1) {
+			mCompleteTime = FrameClock.getInstance().nanoTime();
+		}
+		// Re-adding is a no-op if a completion is already waiting on the next pass
+		getViewTreeObserver().removeOnPreDrawListener(mRefreshCompleteOnPreDraw);
+		getViewTreeObserver().addOnPreDrawListener(mRefreshCompleteOnPreDraw);
+		invalidate();
+	}
+
+	/**
+	 * Completes the refresh once, on the next PreDraw pass, so that any new content
+	 * has been laid out by the time we measure where it is. The pass itself is
+	 * let through, so the new content shows without waiting a frame.
+	 */
+	private final OnPreDrawListener mRefreshCompleteOnPreDraw = new OnPreDrawListener() {
+		public boolean onPreDraw() {
+			getViewTreeObserver().removeOnPreDrawListener(this);
+			setState(State.REST, mRefreshCompleteAnimated);
+			return true;
+		}
+	};
+
 	/////////////////////////////////////////////////////////////////////////////
 	// GlowListener interface
 
@@ -584,20 +1445,4 @@ public class HoloPullToRefreshLayout extends FrameLayout {
 
 		return mOffsetTop;
 	}
-
-	/**
-	 * Run code once, on the next PreDraw pass of the given View. This implements the
-	 * OnPreDrawListener without having to worry about too much boilerplate.
-	 * @param View
-	 * @param Runnable
-	 */
-	private void runOnNextPreDraw(final Runnable runnable) {
-		getViewTreeObserver().addOnPreDrawListener(new OnPreDrawListener() {
-			public boolean onPreDraw() {
-				getViewTreeObserver().removeOnPreDrawListener(this);
-				runnable.run();
-				return false;
-			}
-		});
-	}
 }
@@ -0,0 +1,66 @@
+package com.dougmelton.holoptr;
+
+/**
+ * When RefreshableListView turns off the native overscroll effect: while it's
+ * drawing its own glow, or when a refreshing header/footer is showing at that
+ * edge. Tracks the inputs and the last mode applied, so the view is only
+ * touched when the policy actually flips. Like {@link PullMath}, it's free of
+ * Android classes.
+ */
+final class OverScrollPolicy {
+
+	private static final int UNKNOWN = -1;
+	private static final int ALLOWED = 0;
+	private static final int SUPPRESSED = 1;
+
+	private boolean mGlowing;
+	private boolean mRefreshingTop;
+	private boolean mRefreshingBottom;
+	private boolean mAtTopEdge;
+	private boolean mAtBottomEdge;
+
+	// What the view was last set to
+	private int mApplied = UNKNOWN;
+
+	/**
+	 * The policy itself: whether the native overscroll effect should be off
+	 */
+	static boolean isSuppressed(boolean glowing, boolean refreshingTop, boolean atTopEdge,
+			boolean refreshingBottom, boolean atBottomEdge) {
+		return glowing || (refreshingTop && atTopEdge) || (refreshingBottom && atBottomEdge);
+	}
+
+	void setGlowing(boolean glowing) {
+		mGlowing = glowing;
+	}
+
+	void setRefreshingTop(boolean refreshing) {
+		mRefreshingTop = refreshing;
+	}
+
+	void setRefreshingBottom(boolean refreshing) {
+		mRefreshingBottom = refreshing;
+	}
+
+	void setEdges(boolean atTop, boolean atBottom) {
+		mAtTopEdge = atTop;
+		mAtBottomEdge = atBottom;
+	}
+
+	boolean isSuppressed() {
+		return isSuppressed(mGlowing, mRefreshingTop, mAtTopEdge, mRefreshingBottom, mAtBottomEdge);
+	}
+
+	/**
+	 * Whether the view needs its overscroll mode set to match {@link #isSuppressed()}.
+	 * Returns true at most once per flip, so the caller must apply the mode when it does.
+	 */
+	boolean update() {
+		final int mode = isSuppressed() ? SUPPRESSED : ALLOWED;
+		if (mode == mApplied) {
+			return false;
+		}
+		mApplied = mode;
+		return true;
+	}
+}
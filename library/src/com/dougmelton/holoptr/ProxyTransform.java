@@ -0,0 +1,421 @@
+package com.dougmelton.holoptr;
+
+import java.util.ArrayList;
+
+/**
+ * The view properties {@link AnimatorProxy} emulates, and everything it works
+ * out from them: which changes need an invalidate, batching them into one, the
+ * transform matrix, its bounds, and the per-offset cache for the pull tilt.
+ * Like {@link PullMath}, it's free of Android classes; the matrices and rects
+ * come through {@link TransformOps}, so the benchmarks run this code rather
+ * than a copy of it.
+ *
+ * @param <M> The matrix type
+ * @param <R> The rect type
+ */
+final class ProxyTransform<M, R> {
+
+	/**
+	 * The view being transformed
+	 */
+	interface Host<R> {
+		/** False once the view has gone; nothing is measured then */
+		boolean hasView();
+
+		int getLeft();
+
+		int getTop();
+
+		int getWidth();
+
+		int getHeight();
+
+		/** Whether the view has a parent to invalidate */
+		boolean canInvalidate();
+
+		/** Invalidate the given area of the parent */
+		void invalidate(R dirty);
+	}
+
+	private final TransformOps<M, R> mOps;
+	private final Host<R> mHost;
+
+	private boolean mHasPivot;
+	private float mPivotX;
+	private float mPivotY;
+	private float mRotationX;
+	private float mRotationY;
+	private float mRotationZ;
+	private float mScaleX = 1;
+	private float mScaleY = 1;
+	private float mTranslationX;
+	private float mTranslationY;
+
+	// While set, the pivot, rotations and scale are the tilt for mSkewOffset in this table
+	private SkewTable mSkewTable;
+	private int mSkewOffset;
+
+	// Open beginUpdate() calls, and whether anything changed inside them
+	private int mUpdateDepth;
+	private boolean mUpdatePending;
+
+	private final R mBefore;
+	private final R mAfter;
+	private final M mTempMatrix;
+
+	// Each offset's tilt and its bounds at 0,0, for the table and geometry they were built for
+	private SkewTable mCacheTable;
+	private ArrayList<M> mCacheMatrices;
+	private ArrayList<R> mCacheBounds;
+	private boolean[] mCacheBuilt;
+	private int mCacheWidth = -1;
+	private int mCacheHeight = -1;
+	private float mCachePivotX = -1;
+
+	ProxyTransform(TransformOps<M, R> ops, Host<R> host) {
+		mOps = ops;
+		mHost = host;
+		mBefore = ops.newRect();
+		mAfter = ops.newRect();
+		mTempMatrix = ops.newMatrix();
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Properties
+
+	float getPivotX() {
+		return mPivotX;
+	}
+
+	void setPivotX(float pivotX) {
+		if (!mHasPivot || mPivotX != pivotX) {
+			prepareForUpdate();
+			mHasPivot = true;
+			mPivotX = pivotX;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getPivotY() {
+		return mPivotY;
+	}
+
+	void setPivotY(float pivotY) {
+		if (!mHasPivot || mPivotY != pivotY) {
+			prepareForUpdate();
+			mHasPivot = true;
+			mPivotY = pivotY;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getRotation() {
+		return mRotationZ;
+	}
+
+	void setRotation(float rotation) {
+		if (mRotationZ != rotation) {
+			prepareForUpdate();
+			mRotationZ = rotation;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getRotationX() {
+		return mRotationX;
+	}
+
+	void setRotationX(float rotationX) {
+		if (mRotationX != rotationX) {
+			prepareForUpdate();
+			mRotationX = rotationX;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getRotationY() {
+		return mRotationY;
+	}
+
+	void setRotationY(float rotationY) {
+		if (mRotationY != rotationY) {
+			prepareForUpdate();
+			mRotationY = rotationY;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getScaleX() {
+		return mScaleX;
+	}
+
+	void setScaleX(float scaleX) {
+		if (mScaleX != scaleX) {
+			prepareForUpdate();
+			mScaleX = scaleX;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getScaleY() {
+		return mScaleY;
+	}
+
+	void setScaleY(float scaleY) {
+		if (mScaleY != scaleY) {
+			prepareForUpdate();
+			mScaleY = scaleY;
+			mSkewTable = null;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getTranslationX() {
+		return mTranslationX;
+	}
+
+	void setTranslationX(float translationX) {
+		if (mTranslationX != translationX) {
+			prepareForUpdate();
+			mTranslationX = translationX;
+			invalidateAfterUpdate();
+		}
+	}
+
+	float getTranslationY() {
+		return mTranslationY;
+	}
+
+	void setTranslationY(float translationY) {
+		if (mTranslationY != translationY) {
+			prepareForUpdate();
+			mTranslationY = translationY;
+			invalidateAfterUpdate();
+		}
+	}
+
+	/**
+	 * Set the pull tilt for the given offset: pivot on the top center, rotate
+	 * back around X and scale up, all in one update and invalidate. The
+	 * transform and its bounds come from a cache rather than being worked out
+	 * again every frame.
+	 */
+	void setSkew(SkewTable table, int offset, float pivotX) {
+		offset = table.clamp(offset);
+		if (mSkewTable == table && mSkewOffset == offset && mPivotX == pivotX) {
+			return;
+		}
+		prepareForUpdate();
+		mHasPivot = true;
+		mPivotX = pivotX;
+		mPivotY = 0;
+		mRotationX = -table.getDegrees(offset);
+		mRotationY = 0;
+		mRotationZ = 0;
+		mScaleX = table.getScale(offset);
+		mScaleY = mScaleX;
+		mSkewTable = table;
+		mSkewOffset = offset;
+		invalidateAfterUpdate();
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Batching
+
+	/**
+	 * Start a batch of property changes. Until the matching
+	 * {@link #commitUpdate()}, setters only record their values; the first
+	 * change takes the rect before, and the commit takes the rect after and
+	 * invalidates their union once. Batches may nest; only the outermost
+	 * commit invalidates.
+	 */
+	void beginUpdate() {
+		if (mUpdateDepth++ == 0) {
+			mUpdatePending = false;
+		}
+	}
+
+	/**
+	 * End a batch started with {@link #beginUpdate()}, invalidating once if
+	 * anything in it changed.
+	 */
+	void commitUpdate() {
+		if (mUpdateDepth == 0) {
+			throw new IllegalStateException("commitUpdate() without beginUpdate()");
+		}
+		if (--mUpdateDepth == 0 && mUpdatePending) {
+			mUpdatePending = false;
+			invalidateUnion();
+		}
+	}
+
+	private void prepareForUpdate() {
+		// Inside a batch, only the first change needs the rect before
+		if (mUpdateDepth > 0) {
+			if (!mUpdatePending) {
+				mUpdatePending = true;
+				computeBefore();
+			}
+			return;
+		}
+		computeBefore();
+	}
+
+	private void computeBefore() {
+		if (mHost.hasView()) {
+			computeRect(mBefore);
+		}
+	}
+
+	private void invalidateAfterUpdate() {
+		if (mUpdateDepth > 0) {
+			return;
+		}
+		invalidateUnion();
+	}
+
+	private void invalidateUnion() {
+		if (!mHost.hasView() || !mHost.canInvalidate()) {
+			return;
+		}
+
+		final R after = mAfter;
+		computeRect(after);
+		mOps.union(after, mBefore);
+		mHost.invalidate(after);
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Transform
+
+	/**
+	 * The view's current bounds in its parent, once transformed
+	 */
+	void computeRect(R r) {
+		final TransformOps<M, R> ops = mOps;
+		final Host<R> host = mHost;
+
+		if (mSkewTable != null) {
+			ops.setRect(r, getSkewBounds());
+			ops.offset(r, mTranslationX + host.getLeft(), mTranslationY + host.getTop());
+			return;
+		}
+
+		// use a rectangle at 0,0 to make sure we don't run into issues with scaling
+		ops.setRect(r, 0, 0, host.getWidth(), host.getHeight());
+
+		final M m = mTempMatrix;
+		ops.reset(m);
+		transformMatrix(m);
+		ops.mapRect(m, r);
+
+		ops.offset(r, host.getLeft(), host.getTop());
+		ops.sort(r);
+	}
+
+	/**
+	 * Apply the current transform to m, as View would for these properties
+	 */
+	void transformMatrix(M m) {
+		if (mSkewTable != null) {
+			mOps.setMatrix(m, getSkewMatrix());
+			mOps.postTranslate(m, mTranslationX, mTranslationY);
+			return;
+		}
+
+		final float w = mHost.getWidth();
+		final float h = mHost.getHeight();
+		final boolean hasPivot = mHasPivot;
+		final float pX = hasPivot ? mPivotX : w / 2f;
+		final float pY = hasPivot ? mPivotY : h / 2f;
+
+		rotateAndScale(m, w, h, pX, pY, mRotationX, mRotationY, mRotationZ, mScaleX, mScaleY);
+		mOps.postTranslate(m, mTranslationX, mTranslationY);
+	}
+
+	// Everything but the translation, about the pivot
+	private void rotateAndScale(M m, float w, float h, float pX, float pY,
+			float rX, float rY, float rZ, float sX, float sY) {
+		final TransformOps<M, R> ops = mOps;
+		if ((rX != 0) || (rY != 0) || (rZ != 0)) {
+			ops.setCameraRotate(m, rX, rY, -rZ);
+			ops.preTranslate(m, -pX, -pY);
+			ops.postTranslate(m, pX, pY);
+		}
+
+		if ((sX != 1.0f) || (sY != 1.0f)) {
+			ops.postScale(m, sX, sY);
+			final float sPX = -(pX / w) * ((sX * w) - w);
+			final float sPY = -(pY / h) * ((sY * h) - h);
+			ops.postTranslate(m, sPX, sPY);
+		}
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Skew cache
+
+	private M getSkewMatrix() {
+		ensureSkewBuilt();
+		return mCacheMatrices.get(mSkewOffset);
+	}
+
+	private R getSkewBounds() {
+		ensureSkewBuilt();
+		return mCacheBounds.get(mSkewOffset);
+	}
+
+	// Built on first use; a new table, view size or pivot throws the old ones away
+	private void ensureSkewBuilt() {
+		final SkewTable table = mSkewTable;
+		if (mCacheTable != table) {
+			final int count = table.size();
+			mCacheTable = table;
+			mCacheMatrices = new ArrayList<M>(count);
+			mCacheBounds = new ArrayList<R>(count);
+			mCacheBuilt = new boolean[count];
+			for (int i = 0; i < count; i++) {
+				mCacheMatrices.add(mOps.newMatrix());
+				mCacheBounds.add(mOps.newRect());
+			}
+		}
+
+		final int width = mHost.getWidth();
+		final int height = mHost.getHeight();
+		if (width != mCacheWidth || height != mCacheHeight || mPivotX != mCachePivotX) {
+			mCacheWidth = width;
+			mCacheHeight = height;
+			mCachePivotX = mPivotX;
+			for (int i = 0; i < mCacheBuilt.length; i++) {
+				mCacheBuilt[i] = false;
+			}
+		}
+
+		final int offset = mSkewOffset;
+		if (!mCacheBuilt[offset]) {
+			buildSkew(offset);
+			mCacheBuilt[offset] = true;
+		}
+	}
+
+	private void buildSkew(int offset) {
+		final TransformOps<M, R> ops = mOps;
+		final float w = mCacheWidth;
+		final float h = mCacheHeight;
+		final float s = mSkewTable.getScale(offset);
+
+		final M m = mCacheMatrices.get(offset);
+		ops.reset(m);
+		rotateAndScale(m, w, h, mCachePivotX, 0f, -mSkewTable.getDegrees(offset), 0f, 0f, s, s);
+
+		final R r = mCacheBounds.get(offset);
+		ops.setRect(r, 0, 0, w, h);
+		ops.mapRect(m, r);
+		ops.sort(r);
+	}
+}
@@ -0,0 +1,85 @@
+package com.dougmelton.holoptr;
+
+/**
+ * The pure math behind the pull gesture and its animations. Kept free of any
+ * Android classes so the benchmarks module can run it on a plain JVM.
+ */
+final class PullMath {
+
+	/** The furthest the pull tilts the refreshable view, in degrees */
+	static final float MAX_SKEW_DEGREES = 32f;
+
+	/** normalizedTime() returns a fraction of this */
+	static final int NORMALIZED_ONE = 1000;
+
+	private PullMath() {
+	}
+
+	// This calculates a springiness to the pull
+	static float augmentedPullDistance(float pixels) {
+		//		float augmented1 = pixels / FRICTION;
+		//		float augmented2 = (pixels * 650f) / (pixels + 1500f);
+		return (pixels * 400f) / (pixels + 1000f);
+	}
+
+	/**
+	 * The finger travel, in pixels, that augmentedPullDistance() turns into the
+	 * given pull distance. Used to pick a pull back up from wherever it was
+	 * animating.
+	 */
+	static float inversePullDistance(float distance) {
+		// augmentedPullDistance() approaches, but never reaches, 400
+		distance = Math.min(distance, 399f);
+		return (distance * 1000f) / (400f - distance);
+	}
+
+	/**
+	 * How fast the pull distance is changing, for a finger the given distance
+	 * from where the pull began and moving at the given speed. The derivative of
+	 * augmentedPullDistance(), so the further the pull the less a flick adds.
+	 */
+	static float pullVelocity(float pixels, float fingerVelocity) {
+		pixels = Math.max(0f, pixels);
+		final float d = pixels + 1000f;
+		return fingerVelocity * 400000f / (d * d);
+	}
+
+	/**
+	 * Where a pull released at the given distance and velocity would come to a
+	 * stop, slowing at a constant deceleration.
+	 */
+	static float projectedPullDistance(float distance, float velocity, float deceleration) {
+		return distance + velocity * Math.abs(velocity) / (2f * deceleration);
+	}
+
+	/**
+	 * How far to tilt the refreshable view back, for an offset already clamped to
+	 * the header height.
+	 */
+	static float skewDegrees(int offset) {
+		return Math.min(MAX_SKEW_DEGREES, offset / 24f);
+	}
+
+	static float skewScale(float degrees) {
+		//return 1f - degrees / 1024f;
+		return 1f + degrees / 128f;
+	}
+
+	/**
+	 * Elapsed time as a fraction of the duration, in 0..NORMALIZED_ONE.
+	 *
+	 * We do do all calculations in long to reduce software float calculations.
+	 * We use 1000 as it gives us good accuracy and small rounding errors.
+	 */
+	static long normalizedTime(long elapsedNanos, long durationNanos) {
+		final long normalizedTime = (NORMALIZED_ONE * elapsedNanos) / durationNanos;
+		return Math.max(Math.min(normalizedTime, NORMALIZED_ONE), 0);
+	}
+
+	/**
+	 * The value between from and to at the given interpolated fraction.
+	 */
+	static int interpolate(int from, int to, float fraction) {
+		return from - Math.round((from - to) * fraction);
+	}
+}
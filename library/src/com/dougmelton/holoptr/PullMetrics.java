@@ -0,0 +1,227 @@
+package com.dougmelton.holoptr;
+
+/**
+ * Opt-in performance counters for a {@link HoloPullToRefreshLayout}. Everything is
+ * kept in fixed-size primitive histograms and counters, so recording allocates
+ * nothing. Values accumulate until {@link #reset()}.
+ *
+ * @see HoloPullToRefreshLayout#setOnPullMetricsListener(HoloPullToRefreshLayout.OnPullMetricsListener)
+ */
+public final class PullMetrics {
+
+	/** A nominal 60Hz frame */
+	public static final long FRAME_INTERVAL_NANOS = 16666667L;
+
+	private static final long MS = 1000000L;
+
+	private static final long[] FRAME_BUCKETS = {
+			8 * MS, 12 * MS, 17 * MS, 25 * MS, 33 * MS, 50 * MS, 100 * MS
+	};
+
+	private static final long[] LATENCY_BUCKETS = {
+			16 * MS, 33 * MS, 50 * MS, 100 * MS, 200 * MS, 300 * MS, 500 * MS, 1000 * MS
+	};
+
+	private final Histogram mFrameDurations = new Histogram(FRAME_BUCKETS);
+	private final Histogram mReleaseToRefresh = new Histogram(LATENCY_BUCKETS);
+	private final Histogram mCompleteToRest = new Histogram(LATENCY_BUCKETS);
+
+	private int mGestures;
+	private int mDroppedFrames;
+	private int mRetargetedTransitions;
+	private int mSuppressedRefreshes;
+
+	PullMetrics() {
+	}
+
+	/**
+	 * Time between consecutive frames of the layout's snap and refresh animations
+	 */
+	public Histogram getFrameDurations() {
+		return mFrameDurations;
+	}
+
+	/**
+	 * Time from lifting the finger to release a refresh to the first frame of
+	 * the refresh animation, i.e. how long until the user sees it take
+	 */
+	public Histogram getReleaseToRefreshLatency() {
+		return mReleaseToRefresh;
+	}
+
+	/**
+	 * Time from {@link HoloPullToRefreshLayout#onRefreshComplete(boolean)} to the
+	 * layout settling back at rest
+	 */
+	public Histogram getCompleteToRestLatency() {
+		return mCompleteToRest;
+	}
+
+	/**
+	 * Frames missed during animations, judged against a nominal 60Hz display
+	 */
+	public int getDroppedFrames() {
+		return mDroppedFrames;
+	}
+
+	/**
+	 * State transitions that interrupted a running animation
+	 */
+	public int getRetargetedTransitions() {
+		return mRetargetedTransitions;
+	}
+
+	/**
+	 * Pulls that returned to rest without refreshing, because the data was fresh enough
+	 *
+	 * @see HoloPullToRefreshLayout#setMinRefreshInterval(long)
+	 */
+	public int getSuppressedRefreshes() {
+		return mSuppressedRefreshes;
+	}
+
+	/**
+	 * Gestures (and refreshes) that have run to completion
+	 */
+	public int getGestures() {
+		return mGestures;
+	}
+
+	public void reset() {
+		mFrameDurations.reset();
+		mReleaseToRefresh.reset();
+		mCompleteToRest.reset();
+		mGestures = 0;
+		mDroppedFrames = 0;
+		mRetargetedTransitions = 0;
+		mSuppressedRefreshes = 0;
+	}
+
+	void recordFrame(long durationNanos) {
+		mFrameDurations.record(durationNanos);
+
+		// A frame that took n intervals means n - 1 vsyncs went by without us
+		final long intervals = (durationNanos + FRAME_INTERVAL_NANOS / 2) / FRAME_INTERVAL_NANOS;
+		if (intervals > 1) {
+			mDroppedFrames += intervals - 1;
+		}
+	}
+
+	void recordReleaseToRefresh(long latencyNanos) {
+		mReleaseToRefresh.record(latencyNanos);
+	}
+
+	void recordCompleteToRest(long latencyNanos) {
+		mCompleteToRest.record(latencyNanos);
+	}
+
+	void recordRetargetedTransition() {
+		mRetargetedTransitions++;
+	}
+
+	void recordSuppressedRefresh() {
+		mSuppressedRefreshes++;
+	}
+
+	void recordGesture() {
+		mGestures++;
+	}
+
+	@Override
+	public String toString() {
+		return "PullMetrics{gestures=" + mGestures
+				+ ", droppedFrames=" + mDroppedFrames
+				+ ", retargetedTransitions=" + mRetargetedTransitions
+				+ ", suppressedRefreshes=" + mSuppressedRefreshes
+				+ ", frames=" + mFrameDurations
+				+ ", releaseToRefresh=" + mReleaseToRefresh
+				+ ", completeToRest=" + mCompleteToRest + "}";
+	}
+
+	/////////////////////////////////////////////////////////////////////////////
+	// Histogram
+
+	/**
+	 * A fixed-bucket histogram of durations. Bucket i counts values up to and
+	 * including {@link #getUpperBoundNanos(int)}; the last bucket catches the rest.
+	 */
+	public static final class Histogram {
+		private final long[] mUpperBounds;
+		private final int[] mCounts;
+		private int mTotal;
+		private long mSumNanos;
+		private long mMaxNanos;
+
+		Histogram(long[] upperBounds) {
+			mUpperBounds = upperBounds;
+			mCounts = new int[upperBounds.length + 1];
+		}
+
+		void record(long nanos) {
+			int i = 0;
+			while (i < mUpperBounds.length && nanos > mUpperBounds[i]) {
+				i++;
+			}
+			mCounts[i]++;
+			mTotal++;
+			mSumNanos += nanos;
+			mMaxNanos = Math.max(mMaxNanos, nanos);
+		}
+
+		void reset() {
+			for (int i = 0; i < mCounts.length; i++) {
+				mCounts[i] = 0;
+			}
+			mTotal = 0;
+			mSumNanos = 0;
+			mMaxNanos = 0;
+		}
+
+		public int getBucketCount() {
+			return mCounts.length;
+		}
+
+		/**
+		 * The inclusive upper bound of the given bucket, or Long.MAX_VALUE for the last
+		 */
+		public long getUpperBoundNanos(int bucket) {
+			return bucket < mUpperBounds.length ? mUpperBounds[bucket] : Long.MAX_VALUE;
+		}
+
+		public int getCount(int bucket) {
+			return mCounts[bucket];
+		}
+
+		public int getTotalCount() {
+			return mTotal;
+		}
+
+		public long getMeanNanos() {
+			return mTotal == 0 ? 0 : mSumNanos / mTotal;
+		}
+
+		public long getMaxNanos() {
+			return mMaxNanos;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder();
+			sb.append("{n=").append(mTotal).append(", meanMs=").append(getMeanNanos() / MS)
+					.append(", maxMs=").append(mMaxNanos / MS).append(", buckets=[");
+			for (int i = 0; i < mCounts.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				if (i < mUpperBounds.length) {
+					sb.append("<=").append(mUpperBounds[i] / MS).append("ms:");
+				}
+				else {
+					sb.append(">:");
+				}
+				sb.append(mCounts[i]);
+			}
+			return sb.append("]}").toString();
+		}
+	}
+}
@@ -38,6 +38,8 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 
 	private OnScrollListener mOnScrollListener;
 
+	private boolean mTraceEnabled = false;
+
 	public RefreshableListView(Context context) {
 		super(context);
 		init(context);
@@ -78,16 +80,38 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 
 	@Override
 	protected void dispatchDraw(Canvas canvas) {
+		final boolean traced = Tracer.begin(mTraceEnabled, Tracer.LIST_DISPATCH_DRAW);
+
 		super.dispatchDraw(canvas);
 
+		// Bounds and alpha are only updated when the glow actually changes
 		if (mGlowAmount > 0) {
-			mGlowDrawable.setBounds(0, 0, getWidth(), mGlowAmount / 2);
 			mGlowDrawable.draw(canvas);
-
-			mEdgeDrawable.setBounds(0, 0, getWidth(), Math.min(mGlowAmount, mEdgeDrawable.getIntrinsicHeight()));
-			mEdgeDrawable.setAlpha(Math.min(mGlowAmount, 255));
 			mEdgeDrawable.draw(canvas);
 		}
+
+		Tracer.end(traced);
+	}
+
+	void setTraceEnabled(boolean enabled) {
+		mTraceEnabled = enabled;
+	}
+
+	@Override
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		updateGlowDrawables();
+	}
+
+	private void updateGlowDrawables() {
+		mGlowDrawable.setBounds(0, 0, getWidth(), mGlowAmount / 2);
+		mEdgeDrawable.setBounds(0, 0, getWidth(), Math.min(mGlowAmount, mEdgeDrawable.getIntrinsicHeight()));
+		mEdgeDrawable.setAlpha(Math.min(mGlowAmount, 255));
+	}
+
+	// How far down from the top the glow for the given amount paints
+	private int getGlowExtent(int amount) {
+		return Math.max(amount / 2, Math.min(amount, mEdgeDrawable.getIntrinsicHeight()));
 	}
 
 	@Override
@@ -127,16 +151,8 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 
 	@Override
 	public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
-		// Dynamically set the overscroll mode
-		if (mHeaderView.getVisibility() == View.VISIBLE && firstVisibleItem == 0) {
-			setOverScrollMode(OVER_SCROLL_NEVER);
-		}
-		else if (mFooterView.getVisibility() == View.VISIBLE && firstVisibleItem + visibleItemCount == totalItemCount) {
-			setOverScrollMode(OVER_SCROLL_NEVER);
-		}
-		else {
-			setOverScrollMode(OVER_SCROLL_ALWAYS);
-		}
+		mOverScrollPolicy.setEdges(firstVisibleItem == 0, firstVisibleItem + visibleItemCount == totalItemCount);
+		updateOverScrollMode();
 
 		if (mOnScrollListener != null) {
 			mOnScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
@@ -150,12 +166,30 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 		}
 	}
 
+	/////////////////////////////////////////////////////////////////////////////
+	// Overscroll policy
+
+	private final OverScrollPolicy mOverScrollPolicy = new OverScrollPolicy();
+
+	/**
+	 * Dynamically set the overscroll mode, per {@link OverScrollPolicy}.
+	 * setOverScrollMode() is only called when the policy actually flips, not on
+	 * every scroll callback.
+	 */
+	private void updateOverScrollMode() {
+		if (mOverScrollPolicy.update()) {
+			setOverScrollMode(mOverScrollPolicy.isSuppressed() ? OVER_SCROLL_NEVER : OVER_SCROLL_ALWAYS);
+		}
+	}
+
 	/////////////////////////////////////////////////////////////////////////////
 	// Refreshable
 
 	@Override
 	public void setRefreshingTop(boolean is) {
+		mOverScrollPolicy.setRefreshingTop(is);
 		mHeaderView.setVisibility(is ? View.VISIBLE : View.GONE);
+		updateOverScrollMode();
 		if (getFirstVisiblePosition() == 0) {
 			setSelectionFromTop(0, 0);
 		}
@@ -163,7 +197,9 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 
 	@Override
 	public void setRefreshingBottom(boolean is) {
+		mOverScrollPolicy.setRefreshingBottom(is);
 		mFooterView.setVisibility(is ? View.VISIBLE : View.GONE);
+		updateOverScrollMode();
 	}
 
 	@Override
@@ -199,8 +235,22 @@ public class RefreshableListView extends ListView implements GlowListener, Refre
 	// GlowListener
 
 	public void onGlow(int amount) {
-		this.mGlowAmount = Math.min(getMeasuredHeight(), amount);
-		setOverScrollMode(amount > 0 ? AbsListView.OVER_SCROLL_NEVER : AbsListView.OVER_SCROLL_IF_CONTENT_SCROLLS);
-		invalidate();
+		final int glowAmount = Math.min(getMeasuredHeight(), amount);
+		if (glowAmount == mGlowAmount) {
+			return;
+		}
+
+		final boolean wasGlowing = mGlowAmount > 0;
+
+		// Only the strip covered by the old or the new glow needs redrawing; the rows don't
+		final int dirtyBottom = Math.max(getGlowExtent(mGlowAmount), getGlowExtent(glowAmount));
+		mGlowAmount = glowAmount;
+		updateGlowDrawables();
+
+		if (wasGlowing != (glowAmount > 0)) {
+			mOverScrollPolicy.setGlowing(glowAmount > 0);
+			updateOverScrollMode();
+		}
+		invalidate(0, 0, getWidth(), dirtyBottom);
 	}
 }
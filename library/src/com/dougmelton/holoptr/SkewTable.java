@@ -0,0 +1,44 @@
+package com.dougmelton.holoptr;
+
+/**
+ * The pull tilt for every integer offset from 0 to the header height, worked out
+ * once per layout instead of on every frame. Like {@link PullMath}, it's free
+ * of Android classes. The pre-Honeycomb {@link AnimatorProxy} path keeps each
+ * offset's transform and bounds alongside, in {@link ProxyTransform}.
+ */
+final class SkewTable {
+
+	private final float[] mDegrees;
+	private final float[] mScales;
+
+	/**
+	 * @param maxOffset The header height; offsets are clamped to it
+	 */
+	SkewTable(int maxOffset) {
+		mDegrees = new float[maxOffset + 1];
+		mScales = new float[maxOffset + 1];
+		for (int offset = 0; offset <= maxOffset; offset++) {
+			mDegrees[offset] = PullMath.skewDegrees(offset);
+			mScales[offset] = PullMath.skewScale(mDegrees[offset]);
+		}
+	}
+
+	/**
+	 * The number of offsets, 0 to the header height
+	 */
+	int size() {
+		return mDegrees.length;
+	}
+
+	int clamp(int offset) {
+		return Math.max(0, Math.min(offset, mDegrees.length - 1));
+	}
+
+	float getDegrees(int offset) {
+		return mDegrees[clamp(offset)];
+	}
+
+	float getScale(int offset) {
+		return mScales[clamp(offset)];
+	}
+}
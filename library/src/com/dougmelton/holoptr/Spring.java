@@ -0,0 +1,76 @@
+package com.dougmelton.holoptr;
+
+/**
+ * A critically damped spring, solved exactly rather than stepped, so any frame
+ * interval (including a long dropped frame) lands on the true curve. Like
+ * {@link PullMath}, it's free of Android classes.
+ */
+final class Spring {
+
+	/** Closer than this to the target, in pixels, counts as there */
+	static final float REST_DISTANCE = 0.5f;
+
+	/** Slower than this, in pixels per second, counts as stopped */
+	static final float REST_VELOCITY = 10f;
+
+	// Angular frequency, in radians per second; higher settles sooner
+	private final float mFrequency;
+
+	private float mTarget;
+	private float mPosition;
+	private float mVelocity;
+	private boolean mStopAtTarget;
+
+	Spring(float frequency) {
+		mFrequency = frequency;
+	}
+
+	/**
+	 * @param velocity The starting velocity, in pixels per second
+	 * @param stopAtTarget Stop dead on reaching the target, rather than carrying
+	 *            the velocity past it and swinging back
+	 */
+	void set(float position, float target, float velocity, boolean stopAtTarget) {
+		mPosition = position;
+		mTarget = target;
+		mVelocity = velocity;
+		mStopAtTarget = stopAtTarget;
+	}
+
+	/**
+	 * Move the spring on by the given time.
+	 */
+	void advance(long elapsedNanos) {
+		final float t = elapsedNanos / 1000000000f;
+		final float w = mFrequency;
+
+		// x(t) = (a + bt)e^(-wt), relative to the target
+		final float a = mPosition - mTarget;
+		final float b = mVelocity + w * a;
+		final float decay = (float) Math.exp(-w * t);
+		mPosition = mTarget + (a + b * t) * decay;
+		mVelocity = (b - w * (a + b * t)) * decay;
+
+		// Reached or crossed the target this step
+		if (mStopAtTarget && (mPosition - mTarget) * a <= 0) {
+			mPosition = mTarget;
+			mVelocity = 0;
+		}
+		if (isAtRest()) {
+			mPosition = mTarget;
+			mVelocity = 0;
+		}
+	}
+
+	boolean isAtRest() {
+		return Math.abs(mPosition - mTarget) < REST_DISTANCE && Math.abs(mVelocity) < REST_VELOCITY;
+	}
+
+	float getPosition() {
+		return mPosition;
+	}
+
+	float getVelocity() {
+		return mVelocity;
+	}
+}
@@ -0,0 +1,58 @@
+package com.dougmelton.holoptr;
+
+import android.os.Build;
+import android.os.Trace;
+
+/**
+ * Optional systrace sections around the library's hot paths. A section is
+ * emitted when tracing is on for the calling view (see the traceEnabled
+ * attribute) or globally through {@link HoloPullToRefreshLayout#setTraceEnabledGlobally(boolean)}.
+ * When both are off, each call is a couple of boolean checks.
+ */
+final class Tracer {
+
+	static final String PULL_EVENT = "HPTR:pullEvent";
+	static final String OFFSET = "HPTR:offset";
+	static final String SET_STATE = "HPTR:setState";
+	static final String ANIMATION_TICK = "HPTR:animationTick";
+	static final String LIST_DISPATCH_DRAW = "HPTR:listDispatchDraw";
+	static final String HEADER_LAYOUT = "HPTR:headerLayout";
+	static final String FONT_LOAD = "HPTR:fontLoad";
+
+	private static final boolean HAS_TRACE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+	static volatile boolean sEnabled = false;
+
+	private Tracer() {
+	}
+
+	/**
+	 * Begin a section, if tracing is on for the caller or globally. Returns whether
+	 * a section was begun, which must be passed to {@link #end(boolean)} on the
+	 * same thread, so flipping the switch mid-section can't unbalance the trace.
+	 */
+	static boolean begin(boolean enabled, String section) {
+		if ((enabled || sEnabled) && HAS_TRACE) {
+			Api18.beginSection(section);
+			return true;
+		}
+		return false;
+	}
+
+	static void end(boolean begun) {
+		if (begun) {
+			Api18.endSection();
+		}
+	}
+
+	// Kept in its own class so that Trace is never loaded before Jelly Bean MR2
+	private static final class Api18 {
+		static void beginSection(String section) {
+			Trace.beginSection(section);
+		}
+
+		static void endSection() {
+			Trace.endSection();
+		}
+	}
+}
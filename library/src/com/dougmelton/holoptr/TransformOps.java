@@ -0,0 +1,50 @@
+package com.dougmelton.holoptr;
+
+/**
+ * The matrix and rect operations {@link ProxyTransform} is built on. On a
+ * device they're android.graphics' Matrix, Camera and RectF; the benchmarks
+ * supply plain-JVM stand-ins, so they time the same transform code.
+ *
+ * @param <M> The matrix type
+ * @param <R> The rect type
+ */
+interface TransformOps<M, R> {
+
+	M newMatrix();
+
+	R newRect();
+
+	void reset(M m);
+
+	void setMatrix(M m, M src);
+
+	/**
+	 * Set m to the camera rotation, as Camera.save(), rotateX(), rotateY(),
+	 * rotateZ(), getMatrix(m), restore() would.
+	 */
+	void setCameraRotate(M m, float rotationX, float rotationY, float rotationZ);
+
+	void preTranslate(M m, float dx, float dy);
+
+	void postTranslate(M m, float dx, float dy);
+
+	void postScale(M m, float sx, float sy);
+
+	/**
+	 * Replace r with the bounds of r mapped through m
+	 */
+	void mapRect(M m, R r);
+
+	void setRect(R r, float left, float top, float right, float bottom);
+
+	void setRect(R r, R src);
+
+	void offset(R r, float dx, float dy);
+
+	void union(R r, R other);
+
+	/**
+	 * Swap the edges of r back into order, if a rotation flipped them
+	 */
+	void sort(R r);
+}
@@ -0,0 +1,84 @@
+package com.dougmelton.holoptr;
+
+import java.io.PrintWriter;
+
+/**
+ * A fixed-size ring of the most recent state machine events, kept in primitive
+ * arrays so that recording never allocates and can stay on in release builds.
+ * Written only from the UI thread; {@link #dump} may be called from any thread,
+ * in which case an entry being overwritten at that moment can appear garbled.
+ */
+final class TransitionLog {
+
+	static final int CAPACITY = 64;
+
+	static final int FLAG_ANIMATED = 1;
+	static final int FLAG_RETARGETED = 2;
+
+	private final String[] mStateNames;
+
+	private final byte[] mFrom = new byte[CAPACITY];
+	private final byte[] mTo = new byte[CAPACITY];
+	private final byte[] mFlags = new byte[CAPACITY];
+	private final long[] mTimeNanos = new long[CAPACITY];
+	private final int[] mPullDistance = new int[CAPACITY];
+
+	// Total entries ever written; the next slot is mCount % CAPACITY
+	private volatile int mCount = 0;
+
+	/**
+	 * @param stateNames Names to print for each state ordinal
+	 */
+	TransitionLog(String[] stateNames) {
+		mStateNames = stateNames;
+	}
+
+	/**
+	 * @param from The state ordinal transitioned from, or -1 if there was none
+	 */
+	void record(int from, int to, int flags, long timeNanos, int pullDistance) {
+		final int count = mCount;
+		final int i = count % CAPACITY;
+		mFrom[i] = (byte) from;
+		mTo[i] = (byte) to;
+		mFlags[i] = (byte) flags;
+		mTimeNanos[i] = timeNanos;
+		mPullDistance[i] = pullDistance;
+		mCount = count + 1;
+	}
+
+	/**
+	 * Print the log, oldest entry first, with times relative to nowNanos.
+	 */
+	void dump(PrintWriter writer, String prefix, long nowNanos) {
+		final int count = mCount;
+		final int size = Math.min(count, CAPACITY);
+		writer.print(prefix);
+		writer.print("Transitions (last ");
+		writer.print(size);
+		writer.print(" of ");
+		writer.print(count);
+		writer.println("):");
+
+		for (int n = count - size; n < count; n++) {
+			final int i = n % CAPACITY;
+			writer.print(prefix);
+			writer.print("  -");
+			writer.print((nowNanos - mTimeNanos[i]) / 1000000L);
+			writer.print("ms ");
+			writer.print(nameOf(mFrom[i]));
+			writer.print(" -> ");
+			writer.print(nameOf(mTo[i]));
+			writer.print((mFlags[i] & FLAG_ANIMATED) != 0 ? " animated" : " immediate");
+			if ((mFlags[i] & FLAG_RETARGETED) != 0) {
+				writer.print(" retargeted");
+			}
+			writer.print(" pull=");
+			writer.println(mPullDistance[i]);
+		}
+	}
+
+	private String nameOf(int state) {
+		return state >= 0 && state < mStateNames.length ? mStateNames[state] : "-";
+	}
+}
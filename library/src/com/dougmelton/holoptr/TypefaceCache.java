@@ -0,0 +1,164 @@
+package com.dougmelton.holoptr;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+
+import android.content.Context;
+import android.content.res.Resources.NotFoundException;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Loads the header's Roboto Light typeface once per process, on a background
+ * thread, and hands the same instance to every header that asks for it.
+ */
+final class TypefaceCache {
+	private static final String TAG = TypefaceCache.class.getSimpleName();
+
+	private static final String FONT_FILE = "hptr_roboto_light.ttf";
+
+	private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+	private static final ArrayList<OnTypefaceLoadedListener> sPending = new ArrayList<OnTypefaceLoadedListener>();
+
+	private static Typeface sTypeface;
+	private static boolean sLoaded = false;
+	private static boolean sLoading = false;
+
+	private TypefaceCache() {
+	}
+
+	public interface OnTypefaceLoadedListener {
+		/**
+		 * Called on the UI thread once the typeface is available. Not called if
+		 * the typeface could not be loaded.
+		 */
+		public void onTypefaceLoaded(Typeface typeface);
+	}
+
+	/**
+	 * Deliver Roboto Light to the listener. If it's already loaded, the listener is
+	 * called immediately; otherwise it's called on the UI thread once loading
+	 * finishes. Must be called from the UI thread.
+	 */
+	public static void getRobotoLight(Context context, OnTypefaceLoadedListener listener) {
+		if (sLoaded) {
+			if (sTypeface != null) {
+				listener.onTypefaceLoaded(sTypeface);
+			}
+			return;
+		}
+
+		sPending.add(listener);
+		if (!sLoading) {
+			sLoading = true;
+			final Context appContext = context.getApplicationContext();
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					final boolean traced = Tracer.begin(false, Tracer.FONT_LOAD);
+					final Typeface typeface = load(appContext, R.raw.roboto_light);
+					Tracer.end(traced);
+					sMainHandler.post(new Runnable() {
+						@Override
+						public void run() {
+							deliver(typeface);
+						}
+					});
+				}
+			}, TAG).start();
+		}
+	}
+
+	private static void deliver(Typeface typeface) {
+		sTypeface = typeface;
+		sLoaded = true;
+		sLoading = false;
+
+		if (typeface != null) {
+			for (int i = 0; i < sPending.size(); i++) {
+				sPending.get(i).onTypefaceLoaded(typeface);
+			}
+		}
+		sPending.clear();
+	}
+
+	/**
+	 * Typeface can only be created from a file or an asset, so copy the raw
+	 * resource into the cache dir. The copy is kept, and written under a temp
+	 * name then renamed, so later processes can skip it and concurrent loads
+	 * never see a partial file.
+	 */
+	private static Typeface load(Context context, int resource) {
+		final File font = new File(context.getCacheDir(), FONT_FILE);
+
+		if (font.length() == 0) {
+			InputStream is = null;
+			OutputStream os = null;
+			File tmp = null;
+			try {
+				is = context.getResources().openRawResource(resource);
+				tmp = File.createTempFile(FONT_FILE, null, context.getCacheDir());
+				os = new BufferedOutputStream(new FileOutputStream(tmp));
+
+				final byte[] buffer = new byte[8192];
+				int l = 0;
+				while ((l = is.read(buffer)) > 0) {
+					os.write(buffer, 0, l);
+				}
+				os.close();
+				os = null;
+
+				if (!tmp.renameTo(font)) {
+					Log.e(TAG, "Error caching font!");
+					return null;
+				}
+			}
+			catch (NotFoundException e) {
+				Log.e(TAG, "Could not find font in resources!");
+				return null;
+			}
+			catch (IOException e) {
+				Log.e(TAG, "Error reading in font!");
+				return null;
+			}
+			finally {
+				closeQuietly(is);
+				closeQuietly(os);
+				if (tmp != null) {
+					tmp.delete();
+				}
+			}
+		}
+
+		try {
+			final Typeface tf = Typeface.createFromFile(font);
+			Log.d(TAG, "Successfully loaded font.");
+			return tf;
+		}
+		catch (RuntimeException e) {
+			// A damaged cached copy; drop it so the next process starts over
+			Log.e(TAG, "Error creating font!");
+			font.delete();
+			return null;
+		}
+	}
+
+	private static void closeQuietly(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			}
+			catch (IOException e) {
+				// ignored
+			}
+		}
+	}
+}
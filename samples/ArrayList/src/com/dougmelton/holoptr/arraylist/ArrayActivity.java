@@ -2,10 +2,13 @@ package com.dougmelton.holoptr.arraylist;
 
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import android.app.ListActivity;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.view.animation.Animation;
 import android.view.animation.LinearInterpolator;
@@ -15,7 +18,7 @@ import android.widget.AbsListView.OnScrollListener;
 import android.widget.ArrayAdapter;
 
 import com.dougmelton.holoptr.HoloPullToRefreshLayout;
-import com.dougmelton.holoptr.HoloPullToRefreshLayout.OnRefreshListener;
+import com.dougmelton.holoptr.HoloPullToRefreshLayout.OnAsyncRefreshListener;
 import com.dougmelton.holoptr.RefreshableListView;
 
 public class ArrayActivity extends ListActivity implements OnScrollListener {
@@ -32,12 +35,7 @@ public class ArrayActivity extends ListActivity implements OnScrollListener {
 		setContentView(R.layout.activity_array);
 
 		mPtrLayout = (HoloPullToRefreshLayout) findViewById(R.id.ptr_layout);
-		mPtrLayout.setOnRefreshListener(new OnRefreshListener() {
-			@Override
-			public void onRefresh(HoloPullToRefreshLayout refreshView) {
-				new PretendPullToRefreshTask().execute();
-			}
-		});
+		mPtrLayout.setOnAsyncRefreshListener(mRefreshExecutor, mPretendPullToRefresh);
 
 		RefreshableListView lv = (RefreshableListView) findViewById(android.R.id.list);
 		lv.setRefreshingBottom(true);
@@ -100,28 +98,35 @@ public class ArrayActivity extends ListActivity implements OnScrollListener {
 
 	private int mTopIndex = 0;
 
-	private class PretendPullToRefreshTask extends AsyncTask<Void, Void, Void> {
+	private final ExecutorService mRefreshExecutor = Executors.newSingleThreadExecutor();
 
-		protected PretendPullToRefreshTask() {
-		}
+	private final OnAsyncRefreshListener<Void> mPretendPullToRefresh = new OnAsyncRefreshListener<Void>() {
 
 		@Override
-		protected Void doInBackground(Void... params) {
-			try {
-				Thread.sleep(4000);
-			}
-			catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		public Void onRefreshInBackground(HoloPullToRefreshLayout refreshView) throws Exception {
+			Thread.sleep(4000);
 			return null;
 		}
 
 		@Override
-		protected void onPostExecute(Void result) {
+		public void onRefreshFinished(HoloPullToRefreshLayout refreshView, Void result, Exception error) {
+			if (error instanceof InterruptedException) {
+				// onDestroy() shut the executor down mid-refresh; nothing to show
+				return;
+			}
+			if (error != null) {
+				Log.w(TAG, "Refresh failed", error);
+				return;
+			}
 			mTopIndex = (mTopIndex + mStrings.length - 1) % mStrings.length;
 			mAdapter.insert(mStrings[mTopIndex], 0);
-			mPtrLayout.onRefreshComplete(true);
 		}
+	};
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mRefreshExecutor.shutdownNow();
 	}
 
 	//////////////////////////////////////////////////////////////////////////